@@ -0,0 +1,134 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.Transaction;
+import com.aoindustries.aoserv.creditcards.AoservPersistenceMechanism;
+import com.aoindustries.aoserv.creditcards.BatchResult;
+import com.aoindustries.aoserv.creditcards.CreditCardFilter;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each operation of {@link AoservPersistenceMechanism} against a
+ * {@link FakeMaster}.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar AoservPersistenceMechanismBenchmark}.
+ * Add {@code -prof gc} to include allocation rates.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AoservPersistenceMechanismBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  private static final CreditCardFilter EXPIRING = CreditCardFilter.ALL.withExpiration(YearMonth.of(2027, 1), YearMonth.of(2027, 12));
+
+  @Benchmark
+  public String storeCreditCard(FakeConnectorState state) throws SQLException {
+    return state.persistenceMechanism.storeCreditCard(
+        state.principal,
+        state.newCreditCard(null, state.randomProviderId())
+    );
+  }
+
+  @Benchmark
+  public CreditCard getCreditCard(FakeConnectorState state) throws SQLException {
+    return state.persistenceMechanism.getCreditCard(state.principal, state.randomCreditCardId());
+  }
+
+  @Benchmark
+  public Map<String, CreditCard> getCreditCards(FakeConnectorState state) throws SQLException {
+    return state.persistenceMechanism.getCreditCards(state.principal);
+  }
+
+  @Benchmark
+  public void getCreditCardStream(FakeConnectorState state, Blackhole blackhole) throws SQLException {
+    state.persistenceMechanism.getCreditCardStream(state.principal).forEach(blackhole::consume);
+  }
+
+  /**
+   * Streams the cards expiring within one year of the earliest expiration, found through the expiration index.
+   */
+  @Benchmark
+  public void getExpiringCreditCardStream(FakeConnectorState state, Blackhole blackhole) throws SQLException {
+    state.persistenceMechanism.getCreditCardStream(state.principal, EXPIRING).forEach(blackhole::consume);
+  }
+
+  @Benchmark
+  public Map<String, CreditCard> getCreditCardsByProvider(FakeConnectorState state) throws SQLException {
+    return state.persistenceMechanism.getCreditCards(state.principal, state.randomProviderId());
+  }
+
+  @Benchmark
+  public String insertTransaction(FakeConnectorState state) throws SQLException {
+    return state.persistenceMechanism.insertTransaction(state.principal, state.group, state.newTransaction());
+  }
+
+  /**
+   * Inserts {@link #BATCH_SIZE} transactions per invocation, for comparison with {@link #insertTransaction(com.aoindustries.aoserv.creditcards.benchmarks.FakeConnectorState)}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<BatchResult<String>> insertTransactions(FakeConnectorState state) throws SQLException {
+    List<Transaction> transactions = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      transactions.add(state.newTransaction());
+    }
+    return state.persistenceMechanism.insertTransactions(state.principal, state.group, transactions);
+  }
+
+  @Benchmark
+  public Transaction authorizeCompleted(FakeConnectorState state) throws SQLException {
+    Transaction transaction = state.newCompletedTransaction(false);
+    state.persistenceMechanism.authorizeCompleted(state.principal, transaction);
+    return transaction;
+  }
+
+  @Benchmark
+  public Transaction saleCompleted(FakeConnectorState state) throws SQLException {
+    Transaction transaction = state.newCompletedTransaction(true);
+    state.persistenceMechanism.saleCompleted(state.principal, transaction);
+    return transaction;
+  }
+}
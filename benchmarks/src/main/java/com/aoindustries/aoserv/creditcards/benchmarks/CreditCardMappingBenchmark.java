@@ -0,0 +1,141 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.payments.CreditCard;
+import com.aoindustries.aoserv.client.payment.CountryCode;
+import com.aoindustries.aoserv.creditcards.CreditCardFactory;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures converting one AOServ credit card row to a {@link CreditCard}, comparing the mapping
+ * as it was before being unified into {@link CreditCardFactory} with the current mapping, both
+ * resolving the processor of each row and with the provider already known.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar CreditCardMappingBenchmark -prof gc} and
+ * compare {@code gc.alloc.rate.norm}, the bytes allocated per converted row.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreditCardMappingBenchmark {
+
+  /**
+   * Cycles through the rows of the credit card table.
+   */
+  @State(Scope.Thread)
+  public static class Rows {
+
+    private com.aoindustries.aoserv.client.payment.CreditCard[] rows;
+    private String[] providerIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(FakeConnectorState state) throws IOException, SQLException {
+      List<com.aoindustries.aoserv.client.payment.CreditCard> list = state.conn.getPayment().getCreditCard().getRows();
+      rows = list.toArray(new com.aoindustries.aoserv.client.payment.CreditCard[list.size()]);
+      providerIds = new String[rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        providerIds[i] = state.master.getCreditCardProviderId(rows[i].getPkey());
+      }
+    }
+
+    private int nextIndex() {
+      int index = next;
+      next = index + 1 == rows.length ? 0 : index + 1;
+      return index;
+    }
+  }
+
+  /**
+   * The mapping as previously duplicated in {@code AoservPersistenceMechanism.newCreditCard}.
+   */
+  private static CreditCard legacyMapping(com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard) throws SQLException, IOException {
+    Byte expirationMonth = aoservCreditCard.getExpirationMonth();
+    Short expirationYear = aoservCreditCard.getExpirationYear();
+    CountryCode countryCode = aoservCreditCard.getCountryCode();
+    return new CreditCard(
+        Integer.toString(aoservCreditCard.getPkey()),
+        aoservCreditCard.getPrincipalName(),
+        aoservCreditCard.getGroupName(),
+        aoservCreditCard.getCreditCardProcessor().getProviderId(),
+        aoservCreditCard.getProviderUniqueId(),
+        null,
+        aoservCreditCard.getCardInfo(),
+        expirationMonth == null ? CreditCard.UNKNOWN_EXPIRATION_MONTH : expirationMonth,
+        expirationYear == null ? CreditCard.UNKNOWN_EXPIRATION_YEAR : expirationYear,
+        null,
+        aoservCreditCard.getFirstName(),
+        aoservCreditCard.getLastName(),
+        aoservCreditCard.getCompanyName(),
+        Objects.toString(aoservCreditCard.getEmail(), null),
+        aoservCreditCard.getPhone(),
+        aoservCreditCard.getFax(),
+        aoservCreditCard.getCustomerId(),
+        aoservCreditCard.getCustomerTaxId(),
+        aoservCreditCard.getStreetAddress1(),
+        aoservCreditCard.getStreetAddress2(),
+        aoservCreditCard.getCity(),
+        aoservCreditCard.getState(),
+        aoservCreditCard.getPostalCode(),
+        countryCode == null ? null : countryCode.getCode(),
+        aoservCreditCard.getDescription()
+    );
+  }
+
+  @Benchmark
+  public CreditCard legacy(Rows rows) throws SQLException, IOException {
+    return legacyMapping(rows.rows[rows.nextIndex()]);
+  }
+
+  @Benchmark
+  public CreditCard unified(Rows rows) throws SQLException, IOException {
+    return CreditCardFactory.getCreditCard(rows.rows[rows.nextIndex()]);
+  }
+
+  @Benchmark
+  public CreditCard unifiedKnownProvider(Rows rows) throws SQLException, IOException {
+    int index = rows.nextIndex();
+    return CreditCardFactory.getCreditCard(rows.rows[index], rows.providerIds[index]);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.payments.CreditCardProcessor;
+import com.aoindustries.aoserv.creditcards.CreditCardProcessorFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures processor selection through {@link CreditCardProcessorFactory#getCreditCardProcessor(com.aoindustries.aoserv.client.AoservConnector)},
+ * both single-threaded and under contention.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar CreditCardProcessorFactoryBenchmark}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreditCardProcessorFactoryBenchmark {
+
+  @Benchmark
+  public CreditCardProcessor getCreditCardProcessor(FakeConnectorState state) throws Exception {
+    return CreditCardProcessorFactory.getCreditCardProcessor(state.conn);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public CreditCardProcessor getCreditCardProcessorContended(FakeConnectorState state) throws Exception {
+    return CreditCardProcessorFactory.getCreditCardProcessor(state.conn);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoindustries.aoserv.creditcards.CreditCardReconciler;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full run of {@link CreditCardReconciler} against {@link FakeMerchantServicesProvider},
+ * sequentially with a single shard and in parallel with {@link CreditCardReconciler#DEFAULT_SHARDS}.
+ * Updates are acknowledged but not stored by {@link FakeMaster}, so
+ * every run applies the same updates.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar CreditCardReconcilerBenchmark}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreditCardReconcilerBenchmark {
+
+  private static final CreditCardReconciler sequential = new CreditCardReconciler(new ForkJoinPool(1), 1, null);
+
+  private static final CreditCardReconciler parallel = new CreditCardReconciler(
+      new ForkJoinPool(CreditCardReconciler.DEFAULT_SHARDS),
+      CreditCardReconciler.DEFAULT_SHARDS,
+      null
+  );
+
+  @Benchmark
+  public CreditCardReconciler.Result reconcileSequential(FakeConnectorState state) throws IOException, SQLException {
+    return sequential.reconcile(state.principal);
+  }
+
+  @Benchmark
+  public CreditCardReconciler.Result reconcileParallel(FakeConnectorState state) throws IOException, SQLException {
+    return parallel.reconcile(state.principal);
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.payments.AuthorizationResult;
+import com.aoapps.payments.CaptureResult;
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionRequest;
+import com.aoapps.payments.TransactionResult;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.creditcards.AccountGroup;
+import com.aoindustries.aoserv.creditcards.AoservConnectorPrincipal;
+import com.aoindustries.aoserv.creditcards.AoservPersistenceMechanism;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A connector to a {@link FakeMaster} with configurable table sizes and latency, along with the
+ * principal, group, and payment objects the benchmarks send through it.  All tables are loaded
+ * during setup so that the benchmarks measure steady-state behavior.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+public class FakeConnectorState {
+
+  /**
+   * The number of enabled processors for the account.
+   */
+  @Param({"1", "4"})
+  public int processors;
+
+  /**
+   * The number of stored cards.
+   */
+  @Param({"100", "10000"})
+  public int creditCards;
+
+  /**
+   * The number of payments.
+   */
+  @Param({"1000"})
+  public int payments;
+
+  /**
+   * The latency of every request to the master, in microseconds.
+   */
+  @Param({"0", "250"})
+  public long latencyMicros;
+
+  public FakeMaster master;
+  public AoservConnector conn;
+  public AoservConnectorPrincipal principal;
+  public AccountGroup group;
+  public AoservPersistenceMechanism persistenceMechanism;
+
+  private String[] creditCardIds;
+  private String[] paymentIds;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    master = new FakeMaster(
+        processors,
+        creditCards,
+        payments,
+        TimeUnit.MICROSECONDS.toNanos(latencyMicros),
+        FakeMerchantServicesProvider.class.getName()
+    );
+    conn = master.getConnector();
+    principal = new AoservConnectorPrincipal(conn, FakeMaster.USERNAME);
+    Account account = conn.getAccount().getAccount().get(Account.Name.valueOf(FakeMaster.ACCOUNT));
+    if (account == null) {
+      throw new IllegalStateException("Account not found: " + FakeMaster.ACCOUNT);
+    }
+    group = new AccountGroup(account, null);
+    persistenceMechanism = AoservPersistenceMechanism.getInstance();
+    creditCardIds = new String[creditCards];
+    for (int i = 0; i < creditCards; i++) {
+      creditCardIds[i] = Integer.toString(i + 1);
+    }
+    paymentIds = new String[payments];
+    for (int i = 0; i < payments; i++) {
+      paymentIds[i] = Integer.toString(i + 1);
+    }
+    // Load all tables before measuring
+    conn.getCurrentAdministrator().getUsername().getPackage().getAccount().getCreditCardProcessors();
+    conn.getPayment().getCountryCode().getRows();
+    conn.getPayment().getCreditCard().getRows();
+    conn.getPayment().getPayment().getRows();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    master.close();
+  }
+
+  /**
+   * Gets the persistence unique ID of a random stored card.
+   */
+  public String randomCreditCardId() {
+    return creditCardIds[ThreadLocalRandom.current().nextInt(creditCardIds.length)];
+  }
+
+  /**
+   * Gets the persistence unique ID of a random payment.
+   */
+  public String randomPaymentId() {
+    return paymentIds[ThreadLocalRandom.current().nextInt(paymentIds.length)];
+  }
+
+  /**
+   * Gets the provider ID of a random processor.
+   */
+  public String randomProviderId() {
+    return FakeMaster.getProviderId(ThreadLocalRandom.current().nextInt(processors));
+  }
+
+  /**
+   * Creates a new card, not yet stored, on the given processor.
+   *
+   * @param  persistenceUniqueId  the ID of a stored card or {@code null} for a new card
+   */
+  public CreditCard newCreditCard(String persistenceUniqueId, String providerId) {
+    return new CreditCard(
+        persistenceUniqueId,
+        null,
+        FakeMaster.ACCOUNT,
+        providerId,
+        "token-new",
+        null,
+        "XXXXXXXXXXXX1111",
+        (byte) 12,
+        (short) 2030,
+        null,
+        "First",
+        "Last",
+        null,
+        "card@example.com",
+        null,
+        null,
+        null,
+        null,
+        "1 Main St",
+        null,
+        "Mobile",
+        "AL",
+        "36695",
+        FakeMaster.COUNTRY_CODE,
+        null
+    );
+  }
+
+  private static TransactionRequest newTransactionRequest() {
+    return new TransactionRequest(
+        true,
+        "127.0.0.1",
+        120,
+        null,
+        Currency.getInstance("USD"),
+        new BigDecimal("10.00"),
+        null,
+        false,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        false,
+        null,
+        null,
+        null,
+        "Benchmark"
+    );
+  }
+
+  /**
+   * Creates a new transaction in {@code PROCESSING} status, ready for
+   * {@link AoservPersistenceMechanism#insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)}.
+   */
+  public Transaction newTransaction() {
+    String providerId = randomProviderId();
+    long currentTimeMillis = System.currentTimeMillis();
+    return new Transaction(
+        providerId,
+        null,
+        FakeMaster.ACCOUNT,
+        newTransactionRequest(),
+        newCreditCard(randomCreditCardId(), providerId),
+        currentTimeMillis,
+        FakeMaster.USERNAME,
+        null,
+        -1,
+        null,
+        null,
+        -1,
+        null,
+        null,
+        Transaction.Status.PROCESSING
+    );
+  }
+
+  /**
+   * Creates a new transaction, for a random existing payment, with the results of a gateway call.
+   *
+   * @param  capture  when {@code true}, the transaction is a completed sale, otherwise a completed authorization
+   */
+  public Transaction newCompletedTransaction(boolean capture) {
+    String providerId = randomProviderId();
+    long currentTimeMillis = System.currentTimeMillis();
+    AuthorizationResult authorizationResult = new AuthorizationResult(
+        providerId,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        "auth-1",
+        null,
+        null,
+        AuthorizationResult.ApprovalResult.APPROVED,
+        null,
+        null,
+        null,
+        null,
+        null,
+        AuthorizationResult.CvvResult.MATCH,
+        null,
+        AuthorizationResult.AvsResult.ADDRESS_Y_ZIP_5,
+        "123456"
+    );
+    CaptureResult captureResult = capture
+        ? new CaptureResult(providerId, TransactionResult.CommunicationResult.SUCCESS, null, null, null, "auth-1")
+        : null;
+    return new Transaction(
+        providerId,
+        randomPaymentId(),
+        FakeMaster.ACCOUNT,
+        newTransactionRequest(),
+        newCreditCard(randomCreditCardId(), providerId),
+        currentTimeMillis,
+        FakeMaster.USERNAME,
+        authorizationResult,
+        capture ? currentTimeMillis : -1,
+        capture ? FakeMaster.USERNAME : null,
+        captureResult,
+        -1,
+        null,
+        null,
+        capture ? Transaction.Status.CAPTURED : Transaction.Status.AUTHORIZED
+    );
+  }
+}
@@ -0,0 +1,852 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.hodgepodge.io.AOPool;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.HostAddress;
+import com.aoapps.net.Port;
+import com.aoapps.net.Protocol;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.AoservObject;
+import com.aoindustries.aoserv.client.TcpConnector;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.account.Administrator;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.billing.Package;
+import com.aoindustries.aoserv.client.payment.CountryCode;
+import com.aoindustries.aoserv.client.payment.CreditCard;
+import com.aoindustries.aoserv.client.payment.Payment;
+import com.aoindustries.aoserv.client.payment.Processor;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-process stand-in for the AOServ master server.  It serves a configurable number of
+ * processors, stored credit cards, and payments for a single account, and it answers
+ * every request after a configurable latency.
+ *
+ * <p>The master listens on an ephemeral loopback port, and its {@link #getConnector() connector} is an
+ * ordinary {@link TcpConnector}, so only the public API of the AOServ client is used.  Each request
+ * also pays for its loopback round trip.  Every login is accepted, so connectors from
+ * {@link AoservConnector#switchUsers(com.aoindustries.aoserv.client.account.User.Name)} work, too.</p>
+ *
+ * <p>Rows are populated through {@link AoservObject#init(java.sql.ResultSet)}, in the column order
+ * of the master database, and are sent to the client in the current protocol version.  Writes are
+ * acknowledged without changing the served tables, so every benchmark invocation sees the same
+ * data.  Only when {@linkplain #setStoreAddedPayments(boolean) enabled} are added payments served,
+ * in {@code PROCESSING} status.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class FakeMaster {
+
+  /**
+   * The account that owns all rows.
+   */
+  public static final String ACCOUNT = "AOINDUSTRIES";
+
+  /**
+   * The administrator all connectors are logged-in as.
+   */
+  public static final String USERNAME = "benchmark";
+
+  /**
+   * The country code used by all stored cards and payments.
+   */
+  public static final String COUNTRY_CODE = "US";
+
+  /**
+   * The prefix of the provider ID of each processor, followed by its zero-based index.
+   */
+  public static final String PROVIDER_ID_PREFIX = "fake-";
+
+  /**
+   * The prefix of the provider unique ID of each stored card, followed by its ID.
+   */
+  public static final String PROVIDER_UNIQUE_ID_PREFIX = "token-";
+
+  /**
+   * The password of every connector.
+   */
+  public static final String PASSWORD = "benchmark";
+
+  private static final AoservProtocol.Version VERSION = AoservProtocol.Version.CURRENT_VERSION;
+
+  /**
+   * The number of pooled connections per connector.
+   */
+  private static final int POOL_SIZE = 64;
+
+  /**
+   * How long the end of a request is waited for once no more bytes arrive.  Every request pays
+   * this once before it is answered.
+   */
+  private static final int REQUEST_QUIET_MILLIS = 1;
+
+  private final User.Name username;
+  private final int processorCount;
+  private final int disabledProcessorCount;
+  private final int creditCardCount;
+  private final int paymentCount;
+  private final long latencyNanos;
+  private final Map<Table.TableId, byte[]> tableResponses = new EnumMap<>(Table.TableId.class);
+
+  private final Lock paymentsLock = new ReentrantLock();
+
+  /**
+   * The served payments, guarded by {@link #paymentsLock}.
+   */
+  private final List<AoservObject<?, ?>> payments;
+
+  /**
+   * The serialized {@link #payments}, guarded by {@link #paymentsLock}.
+   */
+  private byte[] paymentsResponse;
+
+  private volatile boolean storeAddedPayments;
+  private final AtomicInteger nextId = new AtomicInteger(Integer.MAX_VALUE / 2);
+  private final AtomicLong nextConnectorId = new AtomicLong(1);
+  private final AtomicLong requestCount = new AtomicLong();
+  private final CountDownLatch closed = new CountDownLatch(1);
+  private final ServerSocket serverSocket;
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+  private final AoservConnector connector;
+
+  /**
+   * Creates a new master.
+   *
+   * @param  processorCount          the number of enabled processors, all of equal weight
+   * @param  disabledProcessorCount  the number of disabled processors, following the enabled processors
+   * @param  creditCardCount         the number of stored cards, spread evenly over all processors
+   * @param  paymentCount            the number of payments, all in {@code PROCESSING} status on the enabled processors
+   * @param  latencyNanos            the time spent answering each request
+   * @param  providerClassName       the {@link com.aoapps.payments.MerchantServicesProvider} implementation of every processor
+   */
+  public FakeMaster(
+      int processorCount,
+      int disabledProcessorCount,
+      int creditCardCount,
+      int paymentCount,
+      long latencyNanos,
+      String providerClassName
+  ) {
+    if (processorCount < 1) {
+      throw new IllegalArgumentException("processorCount < 1: " + processorCount);
+    }
+    if (disabledProcessorCount < 0) {
+      throw new IllegalArgumentException("disabledProcessorCount < 0: " + disabledProcessorCount);
+    }
+    try {
+      this.username = User.Name.valueOf(USERNAME);
+    } catch (ValidationException e) {
+      throw new AssertionError(e);
+    }
+    this.processorCount = processorCount;
+    this.disabledProcessorCount = disabledProcessorCount;
+    this.creditCardCount = creditCardCount;
+    this.paymentCount = paymentCount;
+    this.latencyNanos = latencyNanos;
+    try {
+      tableResponses.put(Table.TableId.BUSINESSES, serialize(Collections.singletonList(newAccount())));
+      tableResponses.put(Table.TableId.BUSINESS_ADMINISTRATORS, serialize(Collections.singletonList(newAdministrator())));
+      tableResponses.put(Table.TableId.USERNAMES, serialize(Collections.singletonList(newUser())));
+      tableResponses.put(Table.TableId.PACKAGES, serialize(Collections.singletonList(newPackage())));
+      tableResponses.put(Table.TableId.COUNTRY_CODES, serialize(Collections.singletonList(newCountryCode())));
+      List<AoservObject<?, ?>> processors = new ArrayList<>(processorCount + disabledProcessorCount);
+      for (int i = 0; i < processorCount + disabledProcessorCount; i++) {
+        processors.add(newProcessor(i, providerClassName, i < processorCount));
+      }
+      tableResponses.put(Table.TableId.CREDIT_CARD_PROCESSORS, serialize(processors));
+      List<AoservObject<?, ?>> creditCards = new ArrayList<>(creditCardCount);
+      for (int id = 1; id <= creditCardCount; id++) {
+        creditCards.add(newCreditCard(id));
+      }
+      tableResponses.put(Table.TableId.CREDIT_CARDS, serialize(creditCards));
+      payments = new ArrayList<>(paymentCount);
+      for (int id = 1; id <= paymentCount; id++) {
+        payments.add(newPayment(id));
+      }
+      paymentsResponse = serialize(payments);
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try {
+      serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Thread acceptor = new Thread(this::accept, "FakeMaster accept: " + serverSocket.getLocalPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+    try {
+      connector = TcpConnector.getTcpConnector(
+          HostAddress.valueOf(InetAddress.getLoopbackAddress().getHostAddress()),
+          null,
+          Port.valueOf(serverSocket.getLocalPort(), Protocol.TCP),
+          username,
+          username,
+          PASSWORD,
+          null,
+          POOL_SIZE,
+          AOPool.UNLIMITED_MAX_CONNECTION_AGE
+      );
+    } catch (ValidationException e) {
+      close();
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Creates a new master without any disabled processors.
+   *
+   * @see  #FakeMaster(int, int, int, int, long, java.lang.String)
+   */
+  public FakeMaster(
+      int processorCount,
+      int creditCardCount,
+      int paymentCount,
+      long latencyNanos,
+      String providerClassName
+  ) {
+    this(processorCount, 0, creditCardCount, paymentCount, latencyNanos, providerClassName);
+  }
+
+  /**
+   * Gets the connector, logged-in as {@link #USERNAME}, that sends every request to this master.
+   */
+  public AoservConnector getConnector() {
+    return connector;
+  }
+
+  /**
+   * Gets the administrator all connectors are logged-in as.
+   */
+  public User.Name getUsername() {
+    return username;
+  }
+
+  /**
+   * Gets the number of enabled processors.
+   */
+  public int getProcessorCount() {
+    return processorCount;
+  }
+
+  /**
+   * Gets the number of disabled processors.
+   */
+  public int getDisabledProcessorCount() {
+    return disabledProcessorCount;
+  }
+
+  /**
+   * Gets the number of stored cards.
+   */
+  public int getCreditCardCount() {
+    return creditCardCount;
+  }
+
+  /**
+   * Gets the number of payments.
+   */
+  public int getPaymentCount() {
+    return paymentCount;
+  }
+
+  /**
+   * Gets the time spent answering each request.
+   */
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  /**
+   * Serves payments once added, in {@code PROCESSING} status, instead of only acknowledging them.
+   * Their updates are still acknowledged without being stored.  Disabled by default, so the served
+   * tables never change.
+   */
+  public void setStoreAddedPayments(boolean storeAddedPayments) {
+    this.storeAddedPayments = storeAddedPayments;
+  }
+
+  /**
+   * Gets the number of requests answered so far.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Stops listening, drops all connections, and releases any cache-invalidation listeners that
+   * are blocked waiting for updates.
+   */
+  public void close() {
+    closed.countDown();
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      // Closing anyway
+    }
+    for (Socket socket : sockets) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Closing anyway
+      }
+    }
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        sockets.add(socket);
+        Thread thread = new Thread(() -> serve(socket), "FakeMaster connection: " + socket.getPort());
+        thread.setDaemon(true);
+        thread.start();
+      } catch (IOException e) {
+        // Closed
+      }
+    }
+  }
+
+  /**
+   * Serves one connection: accepts its login, then answers each of its requests.
+   */
+  private void serve(Socket socket) {
+    try (
+        socket;
+        StreamableInput in = new StreamableInput(new BufferedInputStream(socket.getInputStream()));
+        StreamableOutput out = new StreamableOutput(new BufferedOutputStream(socket.getOutputStream()))
+        ) {
+      login(in, out);
+      byte[] request;
+      while ((request = readRequest(socket, in)) != null) {
+        out.write(handle(request));
+        out.flush();
+      }
+    } catch (IOException e) {
+      // Connection closed
+    } finally {
+      sockets.remove(socket);
+    }
+  }
+
+  /**
+   * Accepts the login sent by {@link TcpConnector} when each connection is opened: the protocol
+   * version, an optional daemon server, the connect-as and authenticate-as users, the password,
+   * and the connector ID, or {@code -1} when the connector does not yet have one.
+   */
+  private void login(StreamableInput in, StreamableOutput out) throws IOException {
+    String version = in.readUTF();
+    if (in.readBoolean()) {
+      // Daemon server
+      in.readUTF();
+    }
+    // Connect as, authenticate as, and password: every login is accepted
+    in.readUTF();
+    in.readUTF();
+    in.readUTF();
+    long connectorId = in.readLong();
+    boolean supported = VERSION.getVersion().equals(version);
+    out.writeBoolean(supported);
+    if (supported) {
+      out.writeBoolean(true);
+      if (connectorId == -1) {
+        out.writeLong(nextConnectorId.getAndIncrement());
+      }
+    } else {
+      out.writeUTF(VERSION.getVersion());
+    }
+    out.flush();
+    if (!supported) {
+      throw new IOException("Unsupported protocol version: " + version);
+    }
+  }
+
+  /**
+   * Reads one request.  Requests are not length-prefixed, and only the start of each is parsed,
+   * so a request ends once the client has sent nothing more for {@link #REQUEST_QUIET_MILLIS}.  The
+   * client sends each request with a single flush and then waits for its response, so this never
+   * joins two requests.  Both the start of the request and its remainder are waited for with
+   * blocking reads, the remainder under a socket timeout, so an idle connection uses no CPU.
+   *
+   * @return  the request or {@code null} when the connection is closed
+   */
+  private static byte[] readRequest(Socket socket, InputStream in) throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    ByteArrayOutputStream request = new ByteArrayOutputStream();
+    request.write(first);
+    byte[] buffer = new byte[4096];
+    socket.setSoTimeout(REQUEST_QUIET_MILLIS);
+    try {
+      while (true) {
+        int count;
+        try {
+          count = in.read(buffer, 0, buffer.length);
+        } catch (SocketTimeoutException e) {
+          // Quiet: the request is complete
+          break;
+        }
+        if (count == -1) {
+          break;
+        }
+        request.write(buffer, 0, count);
+      }
+    } finally {
+      socket.setSoTimeout(0);
+    }
+    return request.toByteArray();
+  }
+
+  private static byte[] serialize(List<? extends AoservObject<?, ?>> rows) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (StreamableOutput out = new StreamableOutput(bout)) {
+      for (AoservObject<?, ?> row : rows) {
+        out.writeByte(AoservProtocol.NEXT);
+        row.write(out, VERSION);
+      }
+      out.writeByte(AoservProtocol.DONE);
+    }
+    return bout.toByteArray();
+  }
+
+  /**
+   * Answers one request, after waiting for the configured latency.
+   */
+  private byte[] handle(byte[] request) throws IOException {
+    requestCount.incrementAndGet();
+    StreamableInput in = new StreamableInput(new ByteArrayInputStream(request));
+    AoservProtocol.CommandId commId = AoservProtocol.CommandId.values()[in.readCompressedInt()];
+    if (commId == AoservProtocol.CommandId.LISTEN_CACHES) {
+      // Nothing is ever invalidated remotely: block the cache monitor until closed
+      try {
+        closed.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      throw new IOException("Master closed");
+    }
+    simulateLatency();
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (StreamableOutput out = new StreamableOutput(bout)) {
+      switch (commId) {
+        case GET_TABLE: {
+          boolean provideProgress = in.readBoolean();
+          Table.TableId tableId = Table.TableId.values()[in.readCompressedInt()];
+          byte[] rows;
+          int rowCount;
+          if (tableId == Table.TableId.CREDIT_CARD_TRANSACTIONS) {
+            paymentsLock.lock();
+            try {
+              rows = paymentsResponse;
+              rowCount = payments.size();
+            } finally {
+              paymentsLock.unlock();
+            }
+          } else {
+            rows = tableResponses.get(tableId);
+            rowCount = tableId == Table.TableId.CREDIT_CARDS ? creditCardCount
+                : tableId == Table.TableId.CREDIT_CARD_PROCESSORS ? processorCount + disabledProcessorCount
+                : rows == null ? 0 : 1;
+          }
+          if (provideProgress) {
+            out.writeCompressedInt(rowCount);
+          }
+          if (rows == null) {
+            out.writeByte(AoservProtocol.DONE);
+          } else {
+            out.write(rows);
+          }
+          break;
+        }
+        case ADD: {
+          Table.TableId tableId = Table.TableId.values()[in.readCompressedInt()];
+          int id = nextId.getAndIncrement();
+          out.writeByte(AoservProtocol.DONE);
+          out.writeCompressedInt(id);
+          if (tableId == Table.TableId.CREDIT_CARD_TRANSACTIONS && storeAddedPayments) {
+            addPayment(id);
+            // Invalidates the payments of the client
+            out.writeCompressedInt(tableId.ordinal());
+          }
+          // Otherwise new rows are acknowledged but not served
+          out.writeCompressedInt(-1);
+          break;
+        }
+        default: {
+          // All other commands are updates with an empty invalidate list
+          out.writeByte(AoservProtocol.DONE);
+          out.writeCompressedInt(-1);
+        }
+      }
+    }
+    return bout.toByteArray();
+  }
+
+  private void addPayment(int id) throws IOException {
+    Payment payment;
+    try {
+      payment = newPayment(id);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+    paymentsLock.lock();
+    try {
+      payments.add(payment);
+      paymentsResponse = serialize(payments);
+    } finally {
+      paymentsLock.unlock();
+    }
+  }
+
+  private void simulateLatency() throws InterruptedIOException {
+    if (latencyNanos > 0) {
+      long deadline = System.nanoTime() + latencyNanos;
+      long remaining;
+      while ((remaining = deadline - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(remaining);
+        if (Thread.interrupted()) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+
+  private static Timestamp created() {
+    return new Timestamp(0);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Account newAccount() throws SQLException {
+    Account row = new Account();
+    row.init(FakeResultSet.newInstance(
+        "accounting", ACCOUNT,
+        "contract_version", null,
+        "created", created(),
+        "canceled", null,
+        "cancel_reason", null,
+        "parent", null,
+        "can_add_backup_server", true,
+        "can_add_businesses", true,
+        "can_see_prices", true,
+        "disable_log", null,
+        "do_not_disable_reason", null,
+        "auto_enable", true,
+        "bill_parent", false
+    ));
+    return row;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Administrator newAdministrator() throws SQLException {
+    Administrator row = new Administrator();
+    row.init(FakeResultSet.newInstance(
+        "username", USERNAME,
+        "password", null,
+        "name", "Benchmark Administrator",
+        "title", null,
+        "birthday", null,
+        "is_preferred", false,
+        "private", false,
+        "created", created(),
+        "work_phone", "800-555-0100",
+        "work_phone_extension", null,
+        "home_phone", null,
+        "mobile_phone", null,
+        "fax", null,
+        "email", "benchmark@example.com",
+        "address1", null,
+        "address2", null,
+        "city", null,
+        "state", null,
+        "country", null,
+        "zip", null,
+        "disable_log", null,
+        "can_switch_users", false,
+        "support_code", null
+    ));
+    return row;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static User newUser() throws SQLException {
+    User row = new User();
+    row.init(FakeResultSet.newInstance(
+        "username", USERNAME,
+        "package", ACCOUNT,
+        "disable_log", null
+    ));
+    return row;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Package newPackage() throws SQLException {
+    Package row = new Package();
+    row.init(FakeResultSet.newInstance(
+        "id", 1,
+        "name", ACCOUNT,
+        "accounting", ACCOUNT,
+        "package_definition", 1,
+        "created", created(),
+        "created_by", USERNAME,
+        "disable_log", null,
+        "email_in_burst", null,
+        "email_in_rate", null,
+        "email_out_burst", null,
+        "email_out_rate", null,
+        "email_relay_burst", null,
+        "email_relay_rate", null
+    ));
+    return row;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static CountryCode newCountryCode() throws SQLException {
+    CountryCode row = new CountryCode();
+    row.init(FakeResultSet.newInstance(
+        "code", COUNTRY_CODE,
+        "name", "United States",
+        "charge_com_supported", true,
+        "charge_com_name", null
+    ));
+    return row;
+  }
+
+  /**
+   * Gets the provider ID of the processor at the given zero-based index.
+   */
+  public static String getProviderId(int index) {
+    return PROVIDER_ID_PREFIX + index;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Processor newProcessor(int index, String providerClassName, boolean enabled) throws SQLException {
+    Processor row = new Processor();
+    row.init(FakeResultSet.newInstance(
+        "provider_id", getProviderId(index),
+        "accounting", ACCOUNT,
+        "class_name", providerClassName,
+        "param1", "param1-" + index,
+        "param2", null,
+        "param3", null,
+        "param4", null,
+        "enabled", enabled,
+        "weight", 1,
+        "description", null,
+        "encryption_from", null,
+        "encryption_recipient", null
+    ));
+    return row;
+  }
+
+  /**
+   * Gets the provider ID of the processor that stores the card with the given ID.
+   */
+  public String getCreditCardProviderId(int id) {
+    return getProviderId(id % (processorCount + disabledProcessorCount));
+  }
+
+  @SuppressWarnings("deprecation")
+  private CreditCard newCreditCard(int id) throws SQLException {
+    CreditCard row = new CreditCard();
+    row.init(FakeResultSet.newInstance(
+        "id", id,
+        "processor_id", getCreditCardProviderId(id),
+        "accounting", ACCOUNT,
+        "group_name", null,
+        "card_info", "XXXXXXXXXXXX" + String.format("%04d", id % 10000),
+        "expiration_month", (byte) (id % 12 + 1),
+        "expiration_year", (short) (2027 + id % 5),
+        "provider_unique_id", PROVIDER_UNIQUE_ID_PREFIX + id,
+        "first_name", "First" + id,
+        "last_name", "Last" + id,
+        "company_name", null,
+        "email", "card" + id + "@example.com",
+        "phone", null,
+        "fax", null,
+        "customer_id", Integer.toString(id),
+        "customer_tax_id", null,
+        "street_address1", id + " Main St",
+        "street_address2", null,
+        "city", "Mobile",
+        "state", "AL",
+        "postal_code", "36695",
+        "country_code", COUNTRY_CODE,
+        "created", created(),
+        "created_by", USERNAME,
+        "principal_name", null,
+        "use_monthly", false,
+        "active", true,
+        "deactivated_on", null,
+        "deactivate_reason", null,
+        "description", null,
+        "encrypted_card_number", null,
+        "encryption_card_number_from", null,
+        "encryption_card_number_recipient", null,
+        "encrypted_expiration", null,
+        "encryption_expiration_from", null,
+        "encryption_expiration_recipient", null
+    ));
+    return row;
+  }
+
+  @SuppressWarnings("deprecation")
+  private Payment newPayment(int id) throws SQLException {
+    Payment row = new Payment();
+    row.init(FakeResultSet.newInstance(
+        "id", id,
+        "processor_id", getProviderId(id % processorCount),
+        "accounting", ACCOUNT,
+        "group_name", null,
+        "test_mode", true,
+        "duplicate_window", 120,
+        "order_number", null,
+        "currency", "USD",
+        "amount", new BigDecimal("10.00"),
+        "tax_amount", null,
+        "tax_exempt", false,
+        "shipping_amount", null,
+        "duty_amount", null,
+        "shipping_first_name", null,
+        "shipping_last_name", null,
+        "shipping_company_name", null,
+        "shipping_street_address1", null,
+        "shipping_street_address2", null,
+        "shipping_city", null,
+        "shipping_state", null,
+        "shipping_postal_code", null,
+        "shipping_country_code", null,
+        "email_customer", false,
+        "merchant_email", null,
+        "invoice_number", null,
+        "purchase_order_number", null,
+        "description", null,
+        "credit_card_created_by", USERNAME,
+        "credit_card_principal_name", null,
+        "credit_card_accounting", ACCOUNT,
+        "credit_card_group_name", null,
+        "credit_card_provider_unique_id", null,
+        "credit_card_masked_card_number", "XXXXXXXXXXXX1111",
+        "credit_card_expiration_month", null,
+        "credit_card_expiration_year", null,
+        "credit_card_first_name", "First" + id,
+        "credit_card_last_name", "Last" + id,
+        "credit_card_company_name", null,
+        "credit_card_email", null,
+        "credit_card_phone", null,
+        "credit_card_fax", null,
+        "credit_card_customer_id", null,
+        "credit_card_customer_tax_id", null,
+        "credit_card_street_address1", id + " Main St",
+        "credit_card_street_address2", null,
+        "credit_card_city", "Mobile",
+        "credit_card_state", "AL",
+        "credit_card_postal_code", "36695",
+        "credit_card_country_code", COUNTRY_CODE,
+        "credit_card_comments", null,
+        "authorization_time", created(),
+        "authorization_username", USERNAME,
+        "authorization_principal_name", null,
+        "authorization_communication_result", null,
+        "authorization_provider_error_code", null,
+        "authorization_error_code", null,
+        "authorization_provider_error_message", null,
+        "authorization_provider_unique_id", null,
+        "authorization_provider_replacement_masked_card_number", null,
+        "authorization_replacement_masked_card_number", null,
+        "authorization_provider_replacement_expiration", null,
+        "authorization_replacement_expiration_month", null,
+        "authorization_replacement_expiration_year", null,
+        "authorization_provider_approval_result", null,
+        "authorization_approval_result", null,
+        "authorization_provider_decline_reason", null,
+        "authorization_decline_reason", null,
+        "authorization_provider_review_reason", null,
+        "authorization_review_reason", null,
+        "authorization_provider_cvv_result", null,
+        "authorization_cvv_result", null,
+        "authorization_provider_avs_result", null,
+        "authorization_avs_result", null,
+        "authorization_approval_code", null,
+        "capture_time", null,
+        "capture_username", null,
+        "capture_principal_name", null,
+        "capture_communication_result", null,
+        "capture_provider_error_code", null,
+        "capture_error_code", null,
+        "capture_provider_error_message", null,
+        "capture_provider_unique_id", null,
+        "void_time", null,
+        "void_username", null,
+        "void_principal_name", null,
+        "void_communication_result", null,
+        "void_provider_error_code", null,
+        "void_error_code", null,
+        "void_provider_error_message", null,
+        "void_provider_unique_id", null,
+        "status", "PROCESSING"
+    ));
+    return row;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import com.aoapps.payments.AuthorizationResult;
+import com.aoapps.payments.CaptureResult;
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.CreditResult;
+import com.aoapps.payments.MerchantServicesProvider;
+import com.aoapps.payments.SaleResult;
+import com.aoapps.payments.TokenizedCreditCard;
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionRequest;
+import com.aoapps.payments.TransactionResult;
+import com.aoapps.payments.VoidResult;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process {@link MerchantServicesProvider} that approves everything immediately.
+ * When listing tokens, it reports a deterministic tenth of the cards as reissued with a new expiration
+ * and omits another tenth, as if they had been deleted at the provider.
+ * Constructed by {@link com.aoindustries.aoserv.creditcards.CreditCardProcessorFactory}, through its
+ * public constructor, from the processors served by {@link FakeMaster}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class FakeMerchantServicesProvider implements MerchantServicesProvider {
+
+  private static final AtomicLong nextUniqueId = new AtomicLong();
+
+  private static final AtomicLong saleCount = new AtomicLong();
+
+  private static final int DIVISOR = 10;
+  private static final int REISSUED_REMAINDER = 0;
+  private static final int MISSING_REMAINDER = 1;
+
+  /**
+   * The expiration month reported for reissued cards.
+   */
+  public static final byte REISSUED_EXPIRATION_MONTH = 12;
+
+  /**
+   * The expiration year reported for reissued cards.
+   */
+  public static final short REISSUED_EXPIRATION_YEAR = 2035;
+
+  /**
+   * Checks if the card with the given provider unique ID is reported as reissued.
+   */
+  public static boolean isReissued(String providerUniqueId) {
+    return Math.floorMod(providerUniqueId.hashCode(), DIVISOR) == REISSUED_REMAINDER;
+  }
+
+  /**
+   * Checks if the card with the given provider unique ID is omitted when listing tokens.
+   */
+  public static boolean isMissing(String providerUniqueId) {
+    return Math.floorMod(providerUniqueId.hashCode(), DIVISOR) == MISSING_REMAINDER;
+  }
+
+  /**
+   * Gets the number of sales sent to all instances so far.
+   */
+  public static long getSaleCount() {
+    return saleCount.get();
+  }
+
+  private final String providerId;
+
+  /**
+   * Called reflectively by {@link com.aoapps.payments.MerchantServicesProviderFactory}.
+   */
+  public FakeMerchantServicesProvider(String providerId, String param1, String param2, String param3, String param4) {
+    this.providerId = providerId;
+  }
+
+  @Override
+  public String getProviderId() {
+    return providerId;
+  }
+
+  private static String nextProviderUniqueId() {
+    return "fake-" + nextUniqueId.incrementAndGet();
+  }
+
+  private AuthorizationResult approved() {
+    return new AuthorizationResult(
+        providerId,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        nextProviderUniqueId(),
+        null,
+        null,
+        AuthorizationResult.ApprovalResult.APPROVED,
+        null,
+        null,
+        null,
+        null,
+        null,
+        AuthorizationResult.CvvResult.MATCH,
+        null,
+        AuthorizationResult.AvsResult.ADDRESS_Y_ZIP_5,
+        "123456"
+    );
+  }
+
+  @Override
+  public SaleResult sale(TransactionRequest transactionRequest, CreditCard creditCard) {
+    saleCount.incrementAndGet();
+    AuthorizationResult authorizationResult = approved();
+    return new SaleResult(
+        authorizationResult,
+        new CaptureResult(
+            providerId,
+            TransactionResult.CommunicationResult.SUCCESS,
+            null,
+            null,
+            null,
+            authorizationResult.getProviderUniqueId()
+        )
+    );
+  }
+
+  @Override
+  public AuthorizationResult authorize(TransactionRequest transactionRequest, CreditCard creditCard) {
+    return approved();
+  }
+
+  @Override
+  public CaptureResult capture(AuthorizationResult authorizationResult) {
+    return new CaptureResult(
+        providerId,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        authorizationResult.getProviderUniqueId()
+    );
+  }
+
+  @Override
+  public VoidResult voidTransaction(Transaction transaction) {
+    return new VoidResult(
+        providerId,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        transaction.getAuthorizationResult().getProviderUniqueId()
+    );
+  }
+
+  @Override
+  public CreditResult credit(TransactionRequest transactionRequest, CreditCard creditCard) {
+    return new CreditResult(
+        providerId,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        nextProviderUniqueId()
+    );
+  }
+
+  @Override
+  public boolean canStoreCreditCards() {
+    return true;
+  }
+
+  @Override
+  public String storeCreditCard(CreditCard creditCard) {
+    return nextProviderUniqueId();
+  }
+
+  @Override
+  public void updateCreditCard(CreditCard creditCard) {
+    // Nothing stored remotely
+  }
+
+  @Override
+  public void updateCreditCardNumberAndExpiration(CreditCard creditCard, String cardNumber, byte expirationMonth, short expirationYear) {
+    // Nothing stored remotely
+  }
+
+  @Override
+  public void updateCreditCardExpiration(CreditCard creditCard, byte expirationMonth, short expirationYear) {
+    // Nothing stored remotely
+  }
+
+  @Override
+  public void deleteCreditCard(CreditCard creditCard) {
+    // Nothing stored remotely
+  }
+
+  @Override
+  public Map<String, TokenizedCreditCard> getTokenizedCreditCards(
+      Map<String, CreditCard> persistedCards,
+      PrintWriter verboseOut,
+      PrintWriter infoOut,
+      PrintWriter warningOut
+  ) {
+    Map<String, TokenizedCreditCard> tokenizedCreditCards = new LinkedHashMap<>(persistedCards.size() * 4 / 3 + 1);
+    for (CreditCard creditCard : persistedCards.values()) {
+      String providerUniqueId = creditCard.getProviderUniqueId();
+      if (isMissing(providerUniqueId)) {
+        continue;
+      }
+      boolean reissued = isReissued(providerUniqueId);
+      tokenizedCreditCards.put(
+          providerUniqueId,
+          new TokenizedCreditCard(
+              providerUniqueId,
+              null,
+              null,
+              null,
+              reissued ? REISSUED_EXPIRATION_MONTH : null,
+              reissued ? REISSUED_EXPIRATION_YEAR : null
+          )
+      );
+    }
+    return tokenizedCreditCards;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+
+/**
+ * A single-row, read-only {@link ResultSet} used to populate rows through
+ * {@link com.aoindustries.aoserv.client.AoservObject#init(java.sql.ResultSet)}, exactly as the master server does.
+ * Columns may be accessed by position or by label, and values are converted leniently
+ * to the requested type.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class FakeResultSet {
+
+  /** Make no instances. */
+  private FakeResultSet() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Creates a result set positioned on a single row.
+   *
+   * @param  columns  alternating column labels and values, in the column order of the table
+   */
+  static ResultSet newInstance(Object... columns) {
+    if ((columns.length & 1) != 0) {
+      throw new IllegalArgumentException("columns must be label/value pairs");
+    }
+    int columnCount = columns.length / 2;
+    String[] labels = new String[columnCount];
+    Object[] values = new Object[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      labels[i] = (String) columns[i * 2];
+      values[i] = columns[i * 2 + 1];
+    }
+    boolean[] wasNull = new boolean[1];
+    return (ResultSet) Proxy.newProxyInstance(
+        FakeResultSet.class.getClassLoader(),
+        new Class<?>[]{ResultSet.class},
+        (proxy, method, args) -> {
+          String name = method.getName();
+          if ("wasNull".equals(name)) {
+            return wasNull[0];
+          }
+          if ("close".equals(name)) {
+            return null;
+          }
+          if (
+              !name.startsWith("get")
+                  || args == null
+                  || args.length != 1
+          ) {
+            throw new SQLFeatureNotSupportedException(name);
+          }
+          int index;
+          if (args[0] instanceof Integer) {
+            index = (Integer) args[0] - 1;
+          } else {
+            index = -1;
+            for (int i = 0; i < columnCount; i++) {
+              if (labels[i].equals(args[0])) {
+                index = i;
+                break;
+              }
+            }
+          }
+          if (index < 0 || index >= columnCount) {
+            throw new SQLException("Column not found: " + args[0]);
+          }
+          Object value = values[index];
+          wasNull[0] = value == null;
+          return convert(value, method.getReturnType());
+        }
+    );
+  }
+
+  private static Object convert(Object value, Class<?> type) throws SQLException {
+    if (type == String.class) {
+      return value == null ? null : value.toString();
+    }
+    if (type == boolean.class) {
+      return value != null && (value instanceof Boolean ? (Boolean) value : "t".equals(value) || "true".equals(value));
+    }
+    if (type == byte.class) {
+      return value == null ? (byte) 0 : ((Number) value).byteValue();
+    }
+    if (type == short.class) {
+      return value == null ? (short) 0 : ((Number) value).shortValue();
+    }
+    if (type == int.class) {
+      return value == null ? 0 : ((Number) value).intValue();
+    }
+    if (type == long.class) {
+      return value == null ? 0L : ((Number) value).longValue();
+    }
+    if (type == float.class) {
+      return value == null ? 0f : ((Number) value).floatValue();
+    }
+    if (type == double.class) {
+      return value == null ? 0d : ((Number) value).doubleValue();
+    }
+    if (type == BigDecimal.class) {
+      return value == null || value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+    }
+    if (type == Timestamp.class) {
+      return value == null || value instanceof Timestamp ? value : new Timestamp(((Number) value).longValue());
+    }
+    if (type == Date.class) {
+      return value == null || value instanceof Date ? value : new Date(((Number) value).longValue());
+    }
+    if (type == Object.class) {
+      return value;
+    }
+    throw new SQLFeatureNotSupportedException("Unsupported column type: " + type.getName());
+  }
+}
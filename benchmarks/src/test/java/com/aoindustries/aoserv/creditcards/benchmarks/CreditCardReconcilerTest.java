@@ -0,0 +1,216 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.aoindustries.aoserv.creditcards.AoservConnectorPrincipal;
+import com.aoindustries.aoserv.creditcards.CreditCardReconciler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reconciles the cards served by a {@link FakeMaster} against {@link FakeMerchantServicesProvider},
+ * which reports a known tenth of the cards as reissued and omits another tenth, and checks the
+ * discrepancies found and the checkpoint/resume behavior.
+ *
+ * <p>Writes are acknowledged but not stored by {@link FakeMaster}, so every run finds the same
+ * discrepancies.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public class CreditCardReconcilerTest {
+
+  private static final int PROCESSORS = 3;
+
+  private static final int DISABLED_PROCESSORS = 1;
+
+  private static final int CREDIT_CARDS = 400;
+
+  private static final int SHARDS = 4;
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeMaster master;
+  private AoservConnectorPrincipal principal;
+  private ForkJoinPool pool;
+
+  @Before
+  public void setUp() {
+    master = new FakeMaster(
+        PROCESSORS,
+        DISABLED_PROCESSORS,
+        CREDIT_CARDS,
+        0,
+        0,
+        FakeMerchantServicesProvider.class.getName()
+    );
+    principal = new AoservConnectorPrincipal(master.getConnector(), FakeMaster.USERNAME);
+    pool = new ForkJoinPool(SHARDS);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+    master.close();
+  }
+
+  /**
+   * Matches the sharding of {@link CreditCardReconciler}, which is by persistence unique ID.
+   */
+  private static int getShard(int id) {
+    return Math.floorMod(Integer.toString(id).hashCode(), SHARDS);
+  }
+
+  private static String getCheckpointKey(String providerId, int shard) {
+    return providerId + '\t' + shard;
+  }
+
+  private static boolean isEnabled(String providerId) {
+    for (int i = 0; i < PROCESSORS; i++) {
+      if (FakeMaster.getProviderId(i).equals(providerId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes the expected result, skipping the cards of any completed shard.
+   *
+   * @return  {checked, expirationsUpdated, missingAtProvider}
+   */
+  private int[] expected(Set<String> completed) {
+    int checked = 0;
+    int expirationsUpdated = 0;
+    int missingAtProvider = 0;
+    for (int id = 1; id <= CREDIT_CARDS; id++) {
+      String providerId = master.getCreditCardProviderId(id);
+      if (isEnabled(providerId) && !completed.contains(getCheckpointKey(providerId, getShard(id)))) {
+        checked++;
+        String providerUniqueId = FakeMaster.PROVIDER_UNIQUE_ID_PREFIX + id;
+        if (FakeMerchantServicesProvider.isMissing(providerUniqueId)) {
+          missingAtProvider++;
+        } else if (FakeMerchantServicesProvider.isReissued(providerUniqueId)) {
+          // Stored cards never already have the reissued expiration
+          expirationsUpdated++;
+        }
+      }
+    }
+    return new int[]{checked, expirationsUpdated, missingAtProvider};
+  }
+
+  private static void assertResult(int[] expected, int shardsSkipped, CreditCardReconciler.Result result) {
+    assertEquals("failures: " + result.getFailures(), Collections.emptyList(), result.getFailures());
+    assertEquals("checked", expected[0], result.getChecked());
+    assertEquals("expirationsUpdated", expected[1], result.getExpirationsUpdated());
+    assertEquals("missingAtProvider", expected[2], result.getMissingAtProvider());
+    assertEquals("cardNumbersUpdated", 0, result.getCardNumbersUpdated());
+    assertEquals("shardsSkipped", shardsSkipped, result.getShardsSkipped());
+  }
+
+  @Test
+  public void testReconcileReportsDiscrepancies() throws Exception {
+    int[] expected = expected(Collections.emptySet());
+    assertTrue("Fixture must have discrepancies", expected[1] > 0 && expected[2] > 0);
+    assertResult(expected, 0, new CreditCardReconciler(pool, SHARDS, null).reconcile(principal));
+  }
+
+  @Test
+  public void testReconcileSkipsDisabledProcessors() throws Exception {
+    CreditCardReconciler.Result result = new CreditCardReconciler(pool, SHARDS, null).reconcile(principal);
+    int enabledCards = 0;
+    for (int id = 1; id <= CREDIT_CARDS; id++) {
+      if (isEnabled(master.getCreditCardProviderId(id))) {
+        enabledCards++;
+      }
+    }
+    assertTrue("Fixture must have cards on disabled processors", enabledCards < CREDIT_CARDS);
+    assertEquals(enabledCards, result.getChecked());
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws Exception {
+    Path checkpoint = temporaryFolder.getRoot().toPath().resolve("reconcile.checkpoint");
+    // As left by an interrupted run that completed some shards
+    Set<String> completed = new HashSet<>();
+    completed.add(getCheckpointKey(FakeMaster.getProviderId(0), 0));
+    completed.add(getCheckpointKey(FakeMaster.getProviderId(0), 2));
+    completed.add(getCheckpointKey(FakeMaster.getProviderId(1), 3));
+    List<String> lines = new ArrayList<>();
+    lines.add("shards=" + SHARDS);
+    lines.addAll(completed);
+    Files.write(checkpoint, lines, StandardCharsets.UTF_8);
+
+    CreditCardReconciler reconciler = new CreditCardReconciler(pool, SHARDS, checkpoint);
+    assertResult(expected(completed), completed.size(), reconciler.reconcile(principal));
+    assertFalse("Checkpoint must be deleted once a run completes without failure", Files.exists(checkpoint));
+
+    // The next run starts over
+    assertResult(expected(Collections.emptySet()), 0, reconciler.reconcile(principal));
+    assertFalse(Files.exists(checkpoint));
+  }
+
+  @Test
+  public void testTruncatedCheckpointLineIgnored() throws Exception {
+    Path checkpoint = temporaryFolder.getRoot().toPath().resolve("reconcile.checkpoint");
+    // As left by a crash while writing a line: its shard was not yet completed
+    Set<String> completed = Collections.singleton(getCheckpointKey(FakeMaster.getProviderId(0), 0));
+    String torn = getCheckpointKey(FakeMaster.getProviderId(1), 2);
+    String contents = "shards=" + SHARDS + '\n' + completed.iterator().next() + '\n' + torn;
+    Files.write(checkpoint, contents.getBytes(StandardCharsets.UTF_8));
+
+    CreditCardReconciler.Result result = new CreditCardReconciler(pool, SHARDS, checkpoint).reconcile(principal);
+    assertResult(expected(completed), completed.size(), result);
+    assertFalse(Files.exists(checkpoint));
+  }
+
+  @Test
+  public void testCheckpointWithDifferentShardsIgnored() throws Exception {
+    Path checkpoint = temporaryFolder.getRoot().toPath().resolve("reconcile.checkpoint");
+    List<String> lines = new ArrayList<>();
+    lines.add("shards=" + (SHARDS + 1));
+    lines.add(getCheckpointKey(FakeMaster.getProviderId(0), 0));
+    Files.write(checkpoint, lines, StandardCharsets.UTF_8);
+
+    CreditCardReconciler.Result result = new CreditCardReconciler(pool, SHARDS, checkpoint).reconcile(principal);
+    assertResult(expected(Collections.emptySet()), 0, result);
+    assertFalse(Files.exists(checkpoint));
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.aoapps.payments.CreditCardProcessor;
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionRequest;
+import com.aoindustries.aoserv.creditcards.CreditCardProcessorFactory;
+import com.aoindustries.aoserv.creditcards.DuplicateTransactionException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Sends the same order through {@link CreditCardProcessor} twice, against a {@link FakeMaster}
+ * that serves added payments, and checks that only one flow reaches the gateway and completes its
+ * payment while the other fails with a {@link DuplicateTransactionException} before the gateway.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class DuplicateTransactionTest {
+
+  private static final String CREDIT_CARD_ID = "1";
+
+  private FakeConnectorState state;
+  private CreditCardProcessor processor;
+
+  @Before
+  public void setUp() throws Exception {
+    state = new FakeConnectorState();
+    state.processors = 1;
+    state.creditCards = 10;
+    state.payments = 0;
+    state.latencyMicros = 0;
+    state.setup();
+    state.master.setStoreAddedPayments(true);
+    processor = CreditCardProcessorFactory.getCreditCardProcessor(state.conn);
+    assertNotNull("No processor selected", processor);
+  }
+
+  @After
+  public void tearDown() {
+    state.tearDown();
+  }
+
+  private static TransactionRequest newTransactionRequest(String orderNumber) {
+    return new TransactionRequest(
+        true,
+        "127.0.0.1",
+        120,
+        orderNumber,
+        Currency.getInstance("USD"),
+        new BigDecimal("10.00"),
+        null,
+        false,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        false,
+        null,
+        null,
+        null,
+        "Duplicate test"
+    );
+  }
+
+  private Transaction sale(String orderNumber) throws Exception {
+    return processor.sale(
+        state.principal,
+        state.group,
+        newTransactionRequest(orderNumber),
+        state.newCreditCard(CREDIT_CARD_ID, FakeMaster.getProviderId(0))
+    );
+  }
+
+  private static void assertCompleted(Transaction transaction) {
+    assertEquals(Transaction.Status.CAPTURED, transaction.getStatus());
+    assertNotNull(transaction.getPersistenceUniqueId());
+  }
+
+  @Test
+  public void testRetryAfterCompletionIsDuplicate() throws Exception {
+    long salesBefore = FakeMerchantServicesProvider.getSaleCount();
+    Transaction first = sale("order-retry");
+    assertCompleted(first);
+    try {
+      sale("order-retry");
+      fail("Duplicate not detected");
+    } catch (DuplicateTransactionException e) {
+      assertEquals(first.getPersistenceUniqueId(), e.getPersistenceUniqueId());
+    }
+    assertEquals("Only the first flow may reach the gateway", 1, FakeMerchantServicesProvider.getSaleCount() - salesBefore);
+  }
+
+  @Test
+  public void testConcurrentDoubleSubmit() throws Exception {
+    long salesBefore = FakeMerchantServicesProvider.getSaleCount();
+    CountDownLatch start = new CountDownLatch(1);
+    Callable<Transaction> flow = () -> {
+      start.await();
+      return sale("order-double");
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<Transaction>> futures = new ArrayList<>(2);
+      futures.add(executor.submit(flow));
+      futures.add(executor.submit(flow));
+      start.countDown();
+      Transaction completed = null;
+      DuplicateTransactionException duplicate = null;
+      for (Future<Transaction> future : futures) {
+        try {
+          Transaction transaction = future.get(1, TimeUnit.MINUTES);
+          assertNull("Both flows completed", completed);
+          completed = transaction;
+        } catch (ExecutionException e) {
+          if (!(e.getCause() instanceof DuplicateTransactionException)) {
+            throw e;
+          }
+          assertNull("Both flows were duplicates", duplicate);
+          duplicate = (DuplicateTransactionException) e.getCause();
+        }
+      }
+      assertNotNull("Neither flow completed", completed);
+      assertNotNull("Neither flow was a duplicate", duplicate);
+      assertCompleted(completed);
+      assertEquals(completed.getPersistenceUniqueId(), duplicate.getPersistenceUniqueId());
+      assertEquals("Only one flow may reach the gateway", 1, FakeMerchantServicesProvider.getSaleCount() - salesBefore);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDifferentOrdersAreNotDuplicates() throws Exception {
+    long salesBefore = FakeMerchantServicesProvider.getSaleCount();
+    Transaction first = sale("order-a");
+    Transaction second = sale("order-b");
+    assertCompleted(first);
+    assertCompleted(second);
+    assertNotEquals(first.getPersistenceUniqueId(), second.getPersistenceUniqueId());
+    assertEquals(2, FakeMerchantServicesProvider.getSaleCount() - salesBefore);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.aoindustries.aoserv.creditcards.CreditCardProcessorFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+/**
+ * Runs thousands of concurrent payments, each on its own virtual thread, against a
+ * {@link FakeMaster} and fails when any virtual thread is pinned to its carrier or the carrier
+ * threads are starved.
+ *
+ * <p>Pinning is detected directly from a JFR recording of {@code jdk.VirtualThreadPinned}
+ * events, with a zero threshold so that even short pins are reported.  Starvation is also
+ * detected by a heartbeat virtual thread that sleeps for {@value #HEARTBEAT_MILLIS} ms at a time
+ * and must never wake more than {@value #ALLOWED_LATENESS_MILLIS} ms late.</p>
+ *
+ * <p>Requires Java 21 or newer and is skipped on older runtimes.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public class VirtualThreadStressTest {
+
+  private static final int PAYMENTS = 5000;
+
+  private static final long LATENCY_MICROS = 1000;
+
+  private static final int HEARTBEAT_MILLIS = 10;
+
+  private static final long ALLOWED_LATENESS_MILLIS = 500;
+
+  private static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testNoPinningOrStarvation() throws Exception {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    assumeTrue("Virtual threads are not available, Java 21 or newer is required", executor != null);
+
+    FakeConnectorState state = new FakeConnectorState();
+    state.processors = 4;
+    state.creditCards = 1000;
+    state.payments = 1000;
+    state.latencyMicros = LATENCY_MICROS;
+    state.setup();
+    try (Recording recording = new Recording()) {
+      recording.enable(VIRTUAL_THREAD_PINNED).withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      final AtomicLong maxLatenessNanos = new AtomicLong();
+      final AtomicInteger failures = new AtomicInteger();
+      final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+      final AtomicInteger completed = new AtomicInteger();
+      try {
+        // Heartbeat
+        executor.execute(() -> {
+          while (completed.get() < PAYMENTS) {
+            long before = System.nanoTime();
+            try {
+              Thread.sleep(HEARTBEAT_MILLIS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+            long lateness = System.nanoTime() - before - TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS);
+            maxLatenessNanos.accumulateAndGet(lateness, Math::max);
+          }
+        });
+        // Payments
+        for (int i = 0; i < PAYMENTS; i++) {
+          executor.execute(() -> {
+            try {
+              assertNotNull("No processor selected", CreditCardProcessorFactory.getCreditCardProcessor(state.conn));
+              state.persistenceMechanism.insertTransaction(state.principal, state.group, state.newTransaction());
+              state.persistenceMechanism.saleCompleted(state.principal, state.newCompletedTransaction(true));
+            } catch (Exception | Error e) {
+              failures.incrementAndGet();
+              firstFailure.compareAndSet(null, e);
+            } finally {
+              completed.incrementAndGet();
+            }
+          });
+        }
+      } finally {
+        executor.shutdown();
+        assertTrue("Payments did not complete", executor.awaitTermination(10, TimeUnit.MINUTES));
+        recording.stop();
+      }
+      if (firstFailure.get() != null) {
+        throw new AssertionError(failures.get() + " of " + PAYMENTS + " payments failed", firstFailure.get());
+      }
+      List<RecordedEvent> pinned = readEvents(recording);
+      assertEquals(
+          "Virtual threads pinned " + pinned.size() + " times" + (pinned.isEmpty() ? "" : ", first: " + pinned.get(0)),
+          0,
+          pinned.size()
+      );
+      long maxLatenessMillis = TimeUnit.NANOSECONDS.toMillis(maxLatenessNanos.get());
+      assertTrue(
+          "Heartbeat was " + maxLatenessMillis + " ms late, allowed " + ALLOWED_LATENESS_MILLIS + " ms",
+          maxLatenessMillis <= ALLOWED_LATENESS_MILLIS
+      );
+    } finally {
+      state.tearDown();
+    }
+  }
+
+  private static List<RecordedEvent> readEvents(Recording recording) throws Exception {
+    Path file = Files.createTempFile(VirtualThreadStressTest.class.getSimpleName() + '-', ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> VIRTUAL_THREAD_PINNED.equals(event.getEventType().getName()))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
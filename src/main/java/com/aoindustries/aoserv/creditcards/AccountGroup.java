@@ -1,6 +1,6 @@
 /*
  * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
- * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2013, 2016, 2018, 2019, 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2013, 2016, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -102,13 +102,16 @@ public final class AccountGroup implements Group {
   /**
    * Returns true of user is an {@link AoservConnectorPrincipal} whose effective administrator is
    * either this account or a parent account.
+   *
+   * <p>The account hierarchy is cached until the underlying tables change, so repeated checks are
+   * hash lookups rather than walks up the parent chain.</p>
    */
   @Override
   public boolean isMember(Principal user) {
     try {
       if (user instanceof AoservConnectorPrincipal) {
         AoservConnectorPrincipal acp = (AoservConnectorPrincipal) user;
-        return acp.getAoservConnector().getCurrentAdministrator().getUsername().getPackage().getAccount().isAccountOrParentOf(account);
+        return AccountHierarchy.isAccountOrParentOf(acp.getAoservConnector(), account);
       }
       return false;
     } catch (IOException | SQLException err) {
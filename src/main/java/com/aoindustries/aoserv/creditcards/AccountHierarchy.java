@@ -0,0 +1,96 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.Account;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the parts of the account hierarchy needed for authorization, so that checking whether
+ * an administrator's account is an account or one of its parents is a hash lookup instead of a
+ * walk up the parent chain.
+ *
+ * <p>Per connector, the account of its current administrator is cached until the user or package
+ * tables change.  The set of each account and all of its parents is cached, on first use, until
+ * the account table changes.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class AccountHierarchy {
+
+  private AccountHierarchy() {
+    // Make no instances
+  }
+
+  private static final ConnectorCache<Account.Name> administratorAccounts = new ConnectorCache<>(
+      conn -> List.of(
+          conn.getAccount().getUser(),
+          conn.getBilling().getPackage()
+      ),
+      conn -> conn.getCurrentAdministrator().getUsername().getPackage().getAccount().getName()
+  );
+
+  private static final ConnectorCache<ConcurrentMap<Account.Name, Set<Account.Name>>> ancestors = new ConnectorCache<>(
+      conn -> List.of(conn.getAccount().getAccount()),
+      conn -> new ConcurrentHashMap<>()
+  );
+
+  /**
+   * Gets the account and all of its parents, computing them when first needed.
+   */
+  private static Set<Account.Name> getAccountAndParents(Account account) throws IOException, SQLException {
+    Account.Name name = account.getName();
+    ConcurrentMap<Account.Name, Set<Account.Name>> byAccount = ancestors.get(account.getTable().getConnector());
+    Set<Account.Name> accountAndParents = byAccount.get(name);
+    if (accountAndParents == null) {
+      Set<Account.Name> newSet = new HashSet<>();
+      Account current = account;
+      // Stop on any cycle, just as a precaution
+      while (current != null && newSet.add(current.getName())) {
+        current = current.getParent();
+      }
+      accountAndParents = Collections.unmodifiableSet(newSet);
+      byAccount.put(name, accountAndParents);
+    }
+    return accountAndParents;
+  }
+
+  /**
+   * Checks if the account of the current administrator of the given connector is the given account
+   * or one of its parents.
+   *
+   * @see  Account#isAccountOrParentOf(com.aoindustries.aoserv.client.account.Account)
+   */
+  static boolean isAccountOrParentOf(AoservConnector conn, Account account) throws IOException, SQLException {
+    return getAccountAndParents(account).contains(administratorAccounts.get(conn));
+  }
+}
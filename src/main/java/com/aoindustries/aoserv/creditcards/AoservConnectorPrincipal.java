@@ -1,6 +1,6 @@
 /*
  * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
- * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2013, 2016, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2013, 2016, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -25,6 +25,7 @@ package com.aoindustries.aoserv.creditcards;
 
 import com.aoapps.lang.exception.WrappedException;
 import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.User;
 import java.io.IOException;
 import java.security.Principal;
 import java.sql.SQLException;
@@ -39,6 +40,12 @@ public final class AoservConnectorPrincipal implements Principal {
   private final AoservConnector conn;
   private final String principalName;
 
+  /**
+   * The username of the current administrator of the connector, resolved on first use.
+   * A connector always acts as the same administrator, so this never changes once resolved.
+   */
+  private volatile User.Name administrator;
+
   /**
    * Creates a new {@link AoservConnectorPrincipal}.
    */
@@ -47,23 +54,43 @@ public final class AoservConnectorPrincipal implements Principal {
     this.principalName = principalName;
   }
 
+  /**
+   * Gets the username of the current administrator, resolving it from the connector only on first use.
+   * When two threads resolve concurrently, both find the same username.
+   */
+  private User.Name getAdministrator() {
+    User.Name a = administrator;
+    if (a == null) {
+      try {
+        a = conn.getCurrentAdministrator().getKey();
+      } catch (IOException | SQLException err) {
+        throw new WrappedException(err);
+      }
+      administrator = a;
+    }
+    return a;
+  }
+
+  /**
+   * Compares the administrator and principal name.  Only the first call on each principal may
+   * access the connector; later calls are in-memory comparisons.
+   */
   @Override
   public boolean equals(Object obj) {
-    try {
-      if (!(obj instanceof AoservConnectorPrincipal)) {
-        return false;
-      }
-      AoservConnectorPrincipal other = (AoservConnectorPrincipal) obj;
-      if (!conn.getCurrentAdministrator().equals(other.getAoservConnector().getCurrentAdministrator())) {
-        return false;
-      }
-      if (principalName == null) {
-        return other.principalName == null;
-      } else {
-        return principalName.equals(other.principalName);
-      }
-    } catch (IOException | SQLException err) {
-      throw new WrappedException(err);
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof AoservConnectorPrincipal)) {
+      return false;
+    }
+    AoservConnectorPrincipal other = (AoservConnectorPrincipal) obj;
+    if (!getAdministrator().equals(other.getAdministrator())) {
+      return false;
+    }
+    if (principalName == null) {
+      return other.principalName == null;
+    } else {
+      return principalName.equals(other.principalName);
     }
   }
 
@@ -72,13 +99,13 @@ public final class AoservConnectorPrincipal implements Principal {
     return getName();
   }
 
+  /**
+   * Hashes the administrator and principal name.  Only the first call on each principal may
+   * access the connector; later calls are in-memory.
+   */
   @Override
   public int hashCode() {
-    try {
-      return conn.getCurrentAdministrator().hashCode() + (principalName == null ? 0 : (principalName.hashCode() * 37));
-    } catch (IOException | SQLException err) {
-      throw new WrappedException(err);
-    }
+    return getAdministrator().hashCode() + (principalName == null ? 0 : (principalName.hashCode() * 37));
   }
 
   /**
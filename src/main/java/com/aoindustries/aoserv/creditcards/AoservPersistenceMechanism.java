@@ -1,6 +1,6 @@
 /*
  * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
- * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2013, 2015, 2016, 2017, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2025  AO Industries, Inc.
+ * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2013, 2015, 2016, 2017, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2025, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -24,18 +24,17 @@
 package com.aoindustries.aoserv.creditcards;
 
 import com.aoapps.collections.AoCollections;
+import com.aoapps.lang.exception.WrappedException;
 import com.aoapps.lang.i18n.Money;
 import com.aoapps.lang.security.acl.Group;
 import com.aoapps.lang.validation.ValidationException;
 import com.aoapps.net.Email;
-import com.aoapps.payments.AuthorizationResult;
-import com.aoapps.payments.CaptureResult;
 import com.aoapps.payments.CreditCard;
 import com.aoapps.payments.PersistenceMechanism;
-import com.aoapps.payments.TokenizedCreditCard;
 import com.aoapps.payments.Transaction;
 import com.aoapps.payments.TransactionRequest;
 import com.aoapps.payments.TransactionResult;
+import com.aoapps.payments.VoidResult;
 import com.aoindustries.aoserv.client.AoservConnector;
 import com.aoindustries.aoserv.client.account.Account;
 import com.aoindustries.aoserv.client.account.Administrator;
@@ -47,11 +46,18 @@ import java.math.BigDecimal;
 import java.security.Principal;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Currency;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * Stores the information in the AOServ Platform.  The principal sent in to the
@@ -61,6 +67,9 @@ import java.util.Objects;
  * <p>All operations will be performed using the connector from the principal,
  * therefore the underlying AOServ security model will apply to these calls.</p>
  *
+ * <p>Timings and wrapped I/O errors are reported to the current {@link CreditCardMetrics}.  Each insert
+ * and completion of a payment is also a Java Flight Recorder event.</p>
+ *
  * @author  AO Industries, Inc.
  */
 public final class AoservPersistenceMechanism implements PersistenceMechanism {
@@ -121,18 +130,21 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
 
   @Override
   public String storeCreditCard(Principal principal, CreditCard creditCard) throws SQLException {
+    long start = System.nanoTime();
+    boolean success = false;
     try {
       final AoservConnector conn = getAoservConnector(principal);
       final String principalName = getPrincipalName(principal);
-      final Account account = conn.getAccount().getAccount().get(Account.Name.valueOf(creditCard.getGroupName()));
+      final ResolutionContext context = ResolutionContext.get(conn);
+      final Account account = context.getAccount(Account.Name.valueOf(creditCard.getGroupName()));
       if (account == null) {
         throw new SQLException("Unable to find Account: " + creditCard.getGroupName());
       }
-      final Processor processor = conn.getPayment().getProcessor().get(creditCard.getProviderId());
+      final Processor processor = context.getProcessor(creditCard.getProviderId());
       if (processor == null) {
         throw new SQLException("Unable to find CreditCardProcessor: " + creditCard.getProviderId());
       }
-      final CountryCode countryCode = conn.getPayment().getCountryCode().get(creditCard.getCountryCode());
+      final CountryCode countryCode = context.getCountryCode(creditCard.getCountryCode());
       if (countryCode == null) {
         throw new SQLException("Unable to find CountryCode: " + creditCard.getCountryCode());
       }
@@ -161,45 +173,19 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
           creditCard.getComments(),
           creditCard.getCardNumber()
       );
-      return Integer.toString(pkey);
-    } catch (ValidationException | IOException e) {
+      String persistenceUniqueId = CreditCardFactory.getIdString(pkey);
+      success = true;
+      return persistenceUniqueId;
+    } catch (ValidationException e) {
       throw new SQLException(e.getLocalizedMessage(), e);
+    } catch (IOException e) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.STORE_CREDIT_CARD, e);
+      throw new SQLException(e.getLocalizedMessage(), e);
+    } finally {
+      Metrics.operationCompleted(CreditCardMetrics.Operation.STORE_CREDIT_CARD, start, success);
     }
   }
 
-  private static CreditCard newCreditCard(com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard) throws SQLException, IOException {
-    Byte expirationMonth = aoservCreditCard.getExpirationMonth();
-    Short expirationYear = aoservCreditCard.getExpirationYear();
-    CountryCode countryCode = aoservCreditCard.getCountryCode();
-    return new CreditCard(
-        Integer.toString(aoservCreditCard.getPkey()),
-        aoservCreditCard.getPrincipalName(),
-        aoservCreditCard.getGroupName(),
-        aoservCreditCard.getCreditCardProcessor().getProviderId(),
-        aoservCreditCard.getProviderUniqueId(),
-        null, // cardNumber
-        aoservCreditCard.getCardInfo(),
-        expirationMonth == null ? CreditCard.UNKNOWN_EXPIRATION_MONTH : expirationMonth, // TODO: 3.0: Make nullable Byte
-        expirationYear == null ? CreditCard.UNKNOWN_EXPIRATION_YEAR : expirationYear, // TODO: 3.0: Make nullable Short
-        null, // cardCode
-        aoservCreditCard.getFirstName(),
-        aoservCreditCard.getLastName(),
-        aoservCreditCard.getCompanyName(),
-        Objects.toString(aoservCreditCard.getEmail(), null),
-        aoservCreditCard.getPhone(),
-        aoservCreditCard.getFax(),
-        aoservCreditCard.getCustomerId(),
-        aoservCreditCard.getCustomerTaxId(),
-        aoservCreditCard.getStreetAddress1(),
-        aoservCreditCard.getStreetAddress2(),
-        aoservCreditCard.getCity(),
-        aoservCreditCard.getState(),
-        aoservCreditCard.getPostalCode(),
-        countryCode == null ? null : countryCode.getCode(),
-        aoservCreditCard.getDescription()
-    );
-  }
-
   @Override
   public CreditCard getCreditCard(Principal principal, String persistenceUniqueId) throws SQLException {
     AoservConnector conn = getAoservConnector(principal);
@@ -209,11 +195,10 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
     } catch (NumberFormatException e) {
       return null;
     }
-    com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard;
     try {
-      aoservCreditCard = conn.getPayment().getCreditCard().get(id);
-      return aoservCreditCard == null ? null : newCreditCard(aoservCreditCard);
+      return CreditCardCache.getCreditCard(conn, id);
     } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARD, err);
       throw new SQLException(err);
     }
   }
@@ -225,7 +210,7 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       List<com.aoindustries.aoserv.client.payment.CreditCard> aoservCreditCards = conn.getPayment().getCreditCard().getRows();
       Map<String, CreditCard> map = AoCollections.newLinkedHashMap(aoservCreditCards.size());
       for (com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard : aoservCreditCards) {
-        CreditCard copy = newCreditCard(aoservCreditCard);
+        CreditCard copy = CreditCardFactory.getCreditCard(aoservCreditCard);
         String persistenceUniqueId = copy.getPersistenceUniqueId();
         if (map.put(persistenceUniqueId, copy) != null) {
           throw new SQLException("Duplicate persistenceUniqueId: " + persistenceUniqueId);
@@ -233,6 +218,7 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       }
       return map;
     } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARDS, err);
       throw new SQLException(err);
     }
   }
@@ -241,14 +227,16 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
   public Map<String, CreditCard> getCreditCards(Principal principal, String providerId) throws SQLException {
     AoservConnector conn = getAoservConnector(principal);
     try {
-      Processor processor = conn.getPayment().getProcessor().get(providerId);
+      Processor processor = ResolutionContext.get(conn).getProcessor(providerId);
       if (processor == null) {
         return new LinkedHashMap<>();
       } else {
+        String processorProviderId = processor.getProviderId();
         List<com.aoindustries.aoserv.client.payment.CreditCard> aoservCreditCards = processor.getCreditCards();
         Map<String, CreditCard> map = AoCollections.newLinkedHashMap(aoservCreditCards.size());
         for (com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard : aoservCreditCards) {
-          CreditCard copy = newCreditCard(aoservCreditCard);
+          // All cards are of this processor, no need to resolve it per card
+          CreditCard copy = CreditCardFactory.getCreditCard(aoservCreditCard, processorProviderId);
           String providerUniqueId = copy.getProviderUniqueId();
           if (map.put(providerUniqueId, copy) != null) {
             throw new SQLException("Duplicate providerUniqueId: " + providerUniqueId);
@@ -257,6 +245,93 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
         return map;
       }
     } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARDS, err);
+      throw new SQLException(err);
+    }
+  }
+
+  /**
+   * Gets one stored card by its provider and the provider's unique ID for the card, such as during a
+   * gateway callback or when reconciling one token.<br>
+   * <br>
+   * Unlike searching {@link #getCreditCards(java.security.Principal, java.lang.String)}, this uses an
+   * index that is built once per provider and maintained until the credit card or processor tables change,
+   * so each lookup is <code>O(1)</code> instead of <code>O(cards per processor)</code>.
+   *
+   * @return  the card or {@code null} when not found
+   *
+   * @throws  SQLException  when two cards of the provider have the same provider unique ID
+   */
+  public CreditCard getCreditCardByProviderUniqueId(Principal principal, String providerId, String providerUniqueId) throws SQLException {
+    AoservConnector conn = getAoservConnector(principal);
+    try {
+      com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard = ProviderUniqueIdIndex.get(conn, providerId, providerUniqueId);
+      return aoservCreditCard == null ? null : CreditCardFactory.getCreditCard(aoservCreditCard, providerId);
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARD, err);
+      throw new SQLException(err);
+    }
+  }
+
+  /**
+   * Streams all credit cards visible to the principal.
+   *
+   * @see  #getCreditCardStream(java.security.Principal, com.aoindustries.aoserv.creditcards.CreditCardFilter)
+   */
+  public Stream<CreditCard> getCreditCardStream(Principal principal) throws SQLException {
+    return getCreditCardStream(principal, CreditCardFilter.ALL);
+  }
+
+  /**
+   * Streams the credit cards visible to the principal that match the given filter.
+   * Unlike {@link #getCreditCards(java.security.Principal)}, each card is converted only as it is
+   * consumed and no map of all cards is built, so walking all cards requires memory proportional to
+   * one card beyond the rows already cached by the connector.<br>
+   * <br>
+   * Filtering by provider starts from only that provider's cards.  Otherwise, filtering by expiration
+   * starts from only the cards expiring within the window, in expiration order, found through an index
+   * maintained until the credit card table changes.  All other filters are applied to the stored rows
+   * before conversion.<br>
+   * <br>
+   * Errors converting a card during traversal are thrown as {@link WrappedException}.
+   *
+   * @return  the cards, or an empty stream when the provider of the filter is not found
+   */
+  public Stream<CreditCard> getCreditCardStream(Principal principal, CreditCardFilter filter) throws SQLException {
+    AoservConnector conn = getAoservConnector(principal);
+    try {
+      List<com.aoindustries.aoserv.client.payment.CreditCard> aoservCreditCards;
+      String providerId = filter.getProviderId();
+      if (providerId == null) {
+        YearMonth expiresFrom = filter.getExpiresFrom();
+        YearMonth expiresTo = filter.getExpiresTo();
+        if (expiresFrom == null && expiresTo == null) {
+          aoservCreditCards = conn.getPayment().getCreditCard().getRows();
+        } else {
+          aoservCreditCards = ExpirationIndex.get(conn, expiresFrom, expiresTo);
+        }
+      } else {
+        Processor processor = ResolutionContext.get(conn).getProcessor(providerId);
+        if (processor == null) {
+          return Stream.empty();
+        }
+        aoservCreditCards = processor.getCreditCards();
+      }
+      return aoservCreditCards.stream()
+          .filter(filter::matches)
+          .map(aoservCreditCard -> {
+            try {
+              // Provider already known when filtered by provider
+              return CreditCardFactory.getCreditCard(aoservCreditCard, providerId);
+            } catch (SQLException err) {
+              throw new WrappedException(err);
+            } catch (IOException err) {
+              Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARDS, err);
+              throw new WrappedException(err);
+            }
+          });
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.GET_CREDIT_CARDS, err);
       throw new SQLException(err);
     }
   }
@@ -273,31 +348,39 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       if (aoservCreditCard == null) {
         throw new SQLException("Unable to find CreditCard: " + id);
       }
-      CountryCode countryCode = conn.getPayment().getCountryCode().get(creditCard.getCountryCode());
+      CountryCode countryCode = ResolutionContext.get(conn).getCountryCode(creditCard.getCountryCode());
       if (countryCode == null) {
         throw new SQLException("Unable to find CountryCode: " + creditCard.getCountryCode());
       }
-      aoservCreditCard.update(
-          creditCard.getMaskedCardNumber(),
-          creditCard.getFirstName(),
-          creditCard.getLastName(),
-          creditCard.getCompanyName(),
-          Email.valueOf(creditCard.getEmail()),
-          creditCard.getPhone(),
-          creditCard.getFax(),
-          creditCard.getCustomerId(),
-          creditCard.getCustomerTaxId(),
-          creditCard.getStreetAddress1(),
-          creditCard.getStreetAddress2(),
-          creditCard.getCity(),
-          creditCard.getState(),
-          creditCard.getPostalCode(),
-          countryCode,
-          creditCard.getComments()
-      );
+      try {
+        aoservCreditCard.update(
+            creditCard.getMaskedCardNumber(),
+            creditCard.getFirstName(),
+            creditCard.getLastName(),
+            creditCard.getCompanyName(),
+            Email.valueOf(creditCard.getEmail()),
+            creditCard.getPhone(),
+            creditCard.getFax(),
+            creditCard.getCustomerId(),
+            creditCard.getCustomerTaxId(),
+            creditCard.getStreetAddress1(),
+            creditCard.getStreetAddress2(),
+            creditCard.getCity(),
+            creditCard.getState(),
+            creditCard.getPostalCode(),
+            countryCode,
+            creditCard.getComments()
+        );
+      } finally {
+        // Invalidate even on failure, since the write may have happened
+        CreditCardCache.invalidate(conn, id);
+      }
     } catch (NumberFormatException err) {
       throw new SQLException("Unable to convert providerUniqueId to pkey: " + creditCard.getPersistenceUniqueId(), err);
-    } catch (ValidationException | IOException err) {
+    } catch (ValidationException err) {
+      throw new SQLException(err);
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.UPDATE_CREDIT_CARD, err);
       throw new SQLException(err);
     }
   }
@@ -317,15 +400,21 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       if (aoservCreditCard == null) {
         throw new SQLException("Unable to find CreditCard: " + id);
       }
-      aoservCreditCard.updateCardNumberAndExpiration(
-          CreditCard.maskCreditCardNumber(cardNumber),
-          cardNumber,
-          expirationMonth,
-          expirationYear
-      );
+      try {
+        aoservCreditCard.updateCardNumberAndExpiration(
+            CreditCard.maskCreditCardNumber(cardNumber),
+            cardNumber,
+            expirationMonth,
+            expirationYear
+        );
+      } finally {
+        // Invalidate even on failure, since the write may have happened
+        CreditCardCache.invalidate(conn, id);
+      }
     } catch (NumberFormatException err) {
       throw new SQLException("Unable to convert providerUniqueId to pkey: " + creditCard.getPersistenceUniqueId(), err);
     } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.UPDATE_CARD_NUMBER, err);
       throw new SQLException(err);
     }
   }
@@ -344,13 +433,19 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       if (aoservCreditCard == null) {
         throw new SQLException("Unable to find CreditCard: " + id);
       }
-      aoservCreditCard.updateCardExpiration(
-          expirationMonth,
-          expirationYear
-      );
+      try {
+        aoservCreditCard.updateCardExpiration(
+            expirationMonth,
+            expirationYear
+        );
+      } finally {
+        // Invalidate even on failure, since the write may have happened
+        CreditCardCache.invalidate(conn, id);
+      }
     } catch (NumberFormatException err) {
       throw new SQLException("Unable to convert providerUniqueId to pkey: " + creditCard.getPersistenceUniqueId(), err);
     } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.UPDATE_EXPIRATION, err);
       throw new SQLException(err);
     }
   }
@@ -364,10 +459,16 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
       if (aoservCreditCard == null) {
         throw new SQLException("Unable to find CreditCard: " + id);
       }
-      aoservCreditCard.remove();
+      try {
+        aoservCreditCard.remove();
+      } finally {
+        // Invalidate even on failure, since the write may have happened
+        CreditCardCache.invalidate(conn, id);
+      }
     } catch (NumberFormatException err) {
       throw new SQLException("Unable to convert providerUniqueId to pkey: " + creditCard.getPersistenceUniqueId(), err);
     } catch (IOException e) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.DELETE_CREDIT_CARD, e);
       throw new SQLException(e.getLocalizedMessage(), e);
     }
   }
@@ -376,42 +477,79 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
     return value == null ? null : new Money(currency, value);
   }
 
-  @Override
-  public String insertTransaction(Principal principal, Group group, Transaction transaction) throws SQLException {
-    try {
-      final AoservConnector conn = getAoservConnector(principal);
-      final String principalName = getPrincipalName(principal);
-      final Account account = getAccount(group);
-      final String groupName = getGroupName(group);
-      final String providerId = transaction.getProviderId();
-      final Processor processor = conn.getPayment().getProcessor().get(providerId);
-      if (processor == null) {
-        throw new SQLException("Unable to find Processor: " + providerId);
+  /**
+   * The administrator and account of the card used by a transaction.
+   */
+  private static final class CardOwner {
+    private final Administrator createdBy;
+    private final Account account;
+
+    private CardOwner(Administrator createdBy, Account account) {
+      this.createdBy = createdBy;
+      this.account = account;
+    }
+  }
+
+  /**
+   * Finds the createdBy from the credit card persistence mechanism, otherwise defaults to current principal.
+   */
+  private static CardOwner getCardOwner(AoservConnector conn, Account account, String ccPersistId) throws IOException, SQLException {
+    if (ccPersistId == null || ccPersistId.length() == 0) {
+      return new CardOwner(conn.getCurrentAdministrator(), account);
+    } else {
+      int ccPersistIdInt = Integer.parseInt(ccPersistId);
+      com.aoindustries.aoserv.client.payment.CreditCard storedCard = ResolutionContext.get(conn).getCreditCard(ccPersistIdInt);
+      if (storedCard == null) {
+        throw new SQLException("Unable to find CreditCard: " + ccPersistIdInt);
       }
+      Administrator creditCardCreatedBy = storedCard.getCreatedBy();
+      if (creditCardCreatedBy == null) {
+        // Might have been filtered - this is OK
+        creditCardCreatedBy = conn.getCurrentAdministrator();
+      }
+      return new CardOwner(creditCardCreatedBy, storedCard.getAccount());
+    }
+  }
+
+  private static Processor getProcessor(AoservConnector conn, String providerId) throws IOException, SQLException {
+    Processor processor = ResolutionContext.get(conn).getProcessor(providerId);
+    if (processor == null) {
+      throw new SQLException("Unable to find Processor: " + providerId);
+    }
+    return processor;
+  }
+
+  /**
+   * A transaction of a batch with its lookups resolved, or the error resolving them.
+   */
+  private static final class ResolvedTransaction {
+    private final Transaction transaction;
+    private Processor processor;
+    private CardOwner cardOwner;
+    private SQLException error;
+
+    private ResolvedTransaction(Transaction transaction) {
+      this.transaction = transaction;
+    }
+  }
+
+  /**
+   * Adds the payment for a transaction, once all of its lookups are resolved.
+   */
+  private static String addPayment(
+      AoservConnector conn,
+      String principalName,
+      Account account,
+      String groupName,
+      Processor processor,
+      CardOwner cardOwner,
+      Transaction transaction
+  ) throws SQLException {
+    try {
       final TransactionRequest transactionRequest = transaction.getTransactionRequest();
       final CreditCard creditCard = transaction.getCreditCard();
-      // Try to find the createdBy from the credit card persistence mechanism, otherwise default to current principal
-      Administrator creditCardCreatedBy;
-      final Account ccAccount;
-      {
-        String ccPersistId = creditCard.getPersistenceUniqueId();
-        if (ccPersistId == null || ccPersistId.length() == 0) {
-          creditCardCreatedBy = conn.getCurrentAdministrator();
-          ccAccount = account;
-        } else {
-          int ccPersistIdInt = Integer.parseInt(ccPersistId);
-          com.aoindustries.aoserv.client.payment.CreditCard storedCard = conn.getPayment().getCreditCard().get(ccPersistIdInt);
-          if (storedCard == null) {
-            throw new SQLException("Unable to find CreditCard: " + ccPersistIdInt);
-          }
-          creditCardCreatedBy = storedCard.getCreatedBy();
-          if (creditCardCreatedBy == null) {
-            // Might have been filtered - this is OK
-            creditCardCreatedBy = conn.getCurrentAdministrator();
-          }
-          ccAccount = storedCard.getAccount();
-        }
-      }
+      final Administrator creditCardCreatedBy = cardOwner.createdBy;
+      final Account ccAccount = cardOwner.account;
       Byte expirationMonth = creditCard.getExpirationMonth(); // TODO: 3.0: Nullable Byte
       if (expirationMonth == CreditCard.UNKNOWN_EXPIRATION_MONTH) {
         expirationMonth = null;
@@ -474,11 +612,494 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
           principalName
       );
       return Integer.toString(pkey);
-    } catch (ValidationException | IOException err) {
+    } catch (ValidationException err) {
+      throw new SQLException(err);
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.INSERT_TRANSACTION, err);
+      throw new SQLException(err);
+    }
+  }
+
+  /**
+   * Commits the event for the insert of a payment, when recorded.
+   *
+   * @param  event                the event or {@code null} when Java Flight Recorder is not available
+   * @param  account              the account or {@code null} when not resolved
+   * @param  persistenceUniqueId  the ID of the new payment or {@code null} when not added
+   */
+  private static void commitInsertEvent(PaymentEvent event, Transaction transaction, Account account, String persistenceUniqueId) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = CreditCardMetrics.Operation.INSERT_TRANSACTION.name();
+      event.providerId = transaction.getProviderId();
+      event.account = account == null ? null : account.getName().toString();
+      event.paymentId = persistenceUniqueId;
+      event.fromStatus = null;
+      Transaction.Status status = transaction.getStatus();
+      event.toStatus = status == null ? null : status.name();
+      event.success = persistenceUniqueId != null;
+      event.commit();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A transaction with an order number and duplicate window, repeating the account, order number,
+   * and amount of one already inserted through this process and connector within that window, is not
+   * inserted again while the earlier payment is still pending or successful.  Instead, a
+   * {@link DuplicateTransactionException} is thrown, holding the persistence unique ID of the earlier
+   * payment.  {@link com.aoapps.payments.CreditCardProcessor} then stops before calling the gateway,
+   * so only the flow that inserted the earlier payment charges the card and completes the payment.</p>
+   *
+   * @throws  DuplicateTransactionException  when the transaction duplicates an earlier payment
+   */
+  @Override
+  public String insertTransaction(Principal principal, Group group, Transaction transaction) throws SQLException {
+    PaymentEvent event = FlightRecorder.beginPayment();
+    long start = System.nanoTime();
+    Account account = null;
+    String persistenceUniqueId = null;
+    try {
+      final AoservConnector conn = getAoservConnector(principal);
+      final String principalName = getPrincipalName(principal);
+      final Account resolvedAccount = getAccount(group);
+      account = resolvedAccount;
+      final String groupName = getGroupName(group);
+      persistenceUniqueId = DuplicateIndex.insert(conn, resolvedAccount, transaction.getTransactionRequest(), () -> {
+        Processor processor = getProcessor(conn, transaction.getProviderId());
+        CardOwner cardOwner = getCardOwner(conn, resolvedAccount, transaction.getCreditCard().getPersistenceUniqueId());
+        return addPayment(conn, principalName, resolvedAccount, groupName, processor, cardOwner, transaction);
+      });
+      ProcessorHealth.gatewayStarting(transaction, persistenceUniqueId);
+      return persistenceUniqueId;
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.INSERT_TRANSACTION, err);
+      throw new SQLException(err);
+    } finally {
+      Metrics.operationCompleted(CreditCardMetrics.Operation.INSERT_TRANSACTION, start, persistenceUniqueId != null);
+      commitInsertEvent(event, transaction, account, persistenceUniqueId);
+    }
+  }
+
+  /**
+   * Inserts many transactions under one principal and group, such as for a recurring billing run.<br>
+   * <br>
+   * The principal, group, processors, and stored cards are each resolved once for the whole batch.
+   * The payments are then added with several requests in flight at a time, overlapping their round trips.<br>
+   * <br>
+   * Each transaction succeeds or fails on its own: a failure of one does not prevent the others
+   * from being inserted, and the persistence unique IDs of those inserted are not lost.<br>
+   * <br>
+   * Duplicates are detected the same as {@link #insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)},
+   * including between transactions of the same batch.  Each duplicate fails with a
+   * {@link DuplicateTransactionException} and must not be sent to the gateway.
+   *
+   * @return  the result for each transaction, in the same order as given, holding its persistence unique ID
+   *
+   * @throws  SQLException  when the principal or group are not usable, in which case no transactions were inserted
+   *
+   * @see  #insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)
+   */
+  public List<BatchResult<String>> insertTransactions(Principal principal, Group group, Collection<? extends Transaction> transactions) throws SQLException {
+    final AoservConnector conn = getAoservConnector(principal);
+    final String principalName = getPrincipalName(principal);
+    final Account account = getAccount(group);
+    final String groupName = getGroupName(group);
+    // Resolve lookups once per distinct processor and stored card
+    final Map<String, CardOwner> cardOwners = new HashMap<>();
+    final List<ResolvedTransaction> resolvedTransactions = new ArrayList<>(transactions.size());
+    for (Transaction transaction : transactions) {
+      ResolvedTransaction resolved = new ResolvedTransaction(transaction);
+      try {
+        Processor processor = getProcessor(conn, transaction.getProviderId());
+        String ccPersistId = transaction.getCreditCard().getPersistenceUniqueId();
+        String ownerKey = ccPersistId == null ? "" : ccPersistId;
+        CardOwner cardOwner = cardOwners.get(ownerKey);
+        if (cardOwner == null) {
+          cardOwner = getCardOwner(conn, account, ccPersistId);
+          cardOwners.put(ownerKey, cardOwner);
+        }
+        resolved.processor = processor;
+        resolved.cardOwner = cardOwner;
+      } catch (SQLException err) {
+        resolved.error = err;
+      } catch (IOException err) {
+        Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.INSERT_TRANSACTION, err);
+        resolved.error = new SQLException(err);
+      } catch (RuntimeException err) {
+        resolved.error = new SQLException(err);
+      }
+      resolvedTransactions.add(resolved);
+    }
+    return Batches.run(resolvedTransactions, resolved -> {
+      if (resolved.error != null) {
+        throw resolved.error;
+      }
+      PaymentEvent event = FlightRecorder.beginPayment();
+      long start = System.nanoTime();
+      String persistenceUniqueId = null;
+      try {
+        persistenceUniqueId = DuplicateIndex.insert(
+            conn,
+            account,
+            resolved.transaction.getTransactionRequest(),
+            () -> addPayment(conn, principalName, account, groupName, resolved.processor, resolved.cardOwner, resolved.transaction)
+        );
+        return persistenceUniqueId;
+      } catch (IOException err) {
+        Metrics.ioExceptionWrapped(CreditCardMetrics.Operation.INSERT_TRANSACTION, err);
+        throw new SQLException(err);
+      } finally {
+        Metrics.operationCompleted(CreditCardMetrics.Operation.INSERT_TRANSACTION, start, persistenceUniqueId != null);
+        commitInsertEvent(event, resolved.transaction, account, persistenceUniqueId);
+      }
+    });
+  }
+
+  /**
+   * Sets the number of requests kept in flight by each batch operation, default {@value Batches#DEFAULT_CONCURRENCY}.
+   * A concurrency of one performs the batch sequentially on the calling thread.
+   */
+  public static void setBatchConcurrency(int batchConcurrency) {
+    Batches.setConcurrency(batchConcurrency);
+  }
+
+  /**
+   * Sets the executor that runs the additional in-flight requests of each batch operation, including
+   * those of {@link CreditCardUpdater} and {@link CreditCardProcessorFactory#warmUp(java.util.Collection)}.
+   * The calling thread always takes part in its batch, so a saturated executor only reduces concurrency.
+   *
+   * @param  batchExecutor  the executor or {@code null} to restore the default, one virtual thread per
+   *                        task when available, otherwise a bounded pool of daemon threads
+   */
+  public static void setBatchExecutor(Executor batchExecutor) {
+    Batches.setExecutor(batchExecutor);
+  }
+
+  /**
+   * Sets the maximum number of converted cards cached per connector by {@link #getCreditCard(java.security.Principal, java.lang.String)},
+   * default {@code 0} for no caching.  Cached cards are evicted least recently used first, are discarded
+   * when written through this mechanism, and are all discarded when the AOServ credit card, processor, or
+   * country code tables change.
+   */
+  public static void setCreditCardCacheSize(int creditCardCacheSize) {
+    CreditCardCache.setMaximumSize(creditCardCacheSize);
+  }
+
+  private static volatile WriteBehindJournal writeBehindJournal;
+
+  /**
+   * Enables write-behind mode, where sale and authorize completions, single or batched, only append
+   * their results to the given journal and return once they are forced to local storage, without
+   * contacting the AOServ Platform.  The journal stores the results into their payments
+   * asynchronously, as the administrator of the connector of the principal, finding each payment
+   * and checking its status then.  A result that can never be stored, such as for a payment the
+   * administrator may not see or with another status, is rejected by the journal and reported to
+   * {@link CreditCardMetrics#journalRecordRejected(java.lang.String, java.lang.String)}, since the
+   * completion has already returned.<br>
+   * <br>
+   * Voids and all other operations are not affected.
+   *
+   * @param  journal  the journal or {@code null} to store completions immediately, the default.
+   *                  The journal is not closed when replaced.
+   */
+  public static void setWriteBehindJournal(WriteBehindJournal journal) {
+    writeBehindJournal = journal;
+  }
+
+  /**
+   * @return  the journal or {@code null} when not in write-behind mode
+   */
+  public static WriteBehindJournal getWriteBehindJournal() {
+    return writeBehindJournal;
+  }
+
+  /**
+   * Gets the stored payment for a transaction, verifying its processor exists and its current status.
+   */
+  private static Payment getPayment(AoservConnector conn, Transaction transaction, Transaction.Status ... allowedStatuses) throws IOException, SQLException {
+    getProcessor(conn, transaction.getProviderId());
+    // Get the stored creditCardTransaction
+    int ccTransactionId = Integer.parseInt(transaction.getPersistenceUniqueId());
+    Payment ccTransaction = conn.getPayment().getPayment().get(ccTransactionId);
+    if (ccTransaction == null) {
+      throw new SQLException("Unable to find Payment: " + ccTransactionId);
+    }
+    String status = ccTransaction.getStatus();
+    for (Transaction.Status allowedStatus : allowedStatuses) {
+      if (status.equals(allowedStatus.name())) {
+        return ccTransaction;
+      }
+    }
+    StringBuilder message = new StringBuilder();
+    message.append("CreditCardTransaction #").append(ccTransactionId).append(" must have status ");
+    for (int i = 0; i < allowedStatuses.length; i++) {
+      if (i > 0) {
+        message.append(" or ");
+      }
+      message.append(allowedStatuses[i].name());
+    }
+    message.append(", its current status is ").append(status);
+    throw new SQLException(message.toString());
+  }
+
+  private static void saleCompleted(Payment payment, Transaction transaction) throws IOException, SQLException {
+    PaymentResult.sale(transaction, null).apply(payment);
+  }
+
+  private static void authorizeCompleted(Payment payment, Transaction transaction) throws IOException, SQLException {
+    PaymentResult.authorize(transaction, null).apply(payment);
+  }
+
+  private static void voidCompleted(Payment payment, Transaction transaction) throws IOException, SQLException {
+    VoidResult voidResult = transaction.getVoidResult();
+    TransactionResult.CommunicationResult voidCommunicationResult = voidResult.getCommunicationResult();
+    TransactionResult.ErrorCode voidErrorCode = voidResult.getErrorCode();
+    payment.voidCompleted(
+        transaction.getVoidTime() == -1 ? null : new Timestamp(transaction.getVoidTime()),
+        transaction.getVoidPrincipalName(),
+        voidCommunicationResult == null ? null : voidCommunicationResult.name(),
+        voidResult.getProviderErrorCode(),
+        voidErrorCode == null ? null : voidErrorCode.name(),
+        voidResult.getProviderErrorMessage(),
+        voidResult.getProviderUniqueId(),
+        transaction.getStatus().name()
+    );
+  }
+
+  /**
+   * Stores the results of one transaction in its payment.
+   */
+  @FunctionalInterface
+  private interface Completion {
+    void complete(Payment payment, Transaction transaction) throws IOException, SQLException;
+  }
+
+  /**
+   * Records the outcome of one transaction for processor health.
+   *
+   * @see  ProcessorHealth#record(com.aoapps.payments.Transaction, boolean)
+   */
+  @FunctionalInterface
+  private interface HealthRecorder {
+    void record(Transaction transaction, boolean sampleLatency);
+  }
+
+  /**
+   * Wider than the statuses of an authorization: a captured sale may still be voided until its
+   * batch settles, which only the provider knows, so it is left to the provider to refuse.
+   */
+  private static final Transaction.Status[] VOID_ALLOWED_STATUSES = {Transaction.Status.AUTHORIZED, Transaction.Status.CAPTURED};
+
+  /**
+   * A completed transaction of a batch with its stored payment, or the error finding it.
+   */
+  private static final class CompletedTransaction {
+    private final Transaction transaction;
+    private Payment payment;
+    private SQLException error;
+
+    private CompletedTransaction(Transaction transaction) {
+      this.transaction = transaction;
+    }
+  }
+
+  /**
+   * Gets the account of a payment for an event, only called when the event is recorded.
+   *
+   * @return  the account or {@code null} when unknown
+   */
+  private static String getAccountName(Payment payment) {
+    if (payment != null) {
+      try {
+        Account account = payment.getAccount();
+        if (account != null) {
+          return account.getName().toString();
+        }
+      } catch (Exception e) {
+        // Recorded without the account
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Commits the event for the completion of a stored payment, when recorded.
+   *
+   * @param  event       the event or {@code null} when Java Flight Recorder is not available
+   * @param  fromStatus  the status before the completion or {@code null} when the payment was not found
+   */
+  private static void commitEvent(
+      PaymentEvent event,
+      CreditCardMetrics.Operation operation,
+      Transaction transaction,
+      Payment payment,
+      String fromStatus,
+      boolean success
+  ) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation.name();
+      event.providerId = transaction.getProviderId();
+      event.account = getAccountName(payment);
+      event.paymentId = transaction.getPersistenceUniqueId();
+      event.fromStatus = fromStatus;
+      Transaction.Status status = transaction.getStatus();
+      event.toStatus = status == null ? null : status.name();
+      event.success = success;
+      event.commit();
+    }
+  }
+
+  /**
+   * Implements the single completions, the same as one transaction of a batch completion.
+   */
+  private static void completeOne(
+      Principal principal,
+      Transaction transaction,
+      CreditCardMetrics.Operation operation,
+      HealthRecorder healthRecorder,
+      Completion completion,
+      PaymentResult.Type journalType,
+      Transaction.Status ... allowedStatuses
+  ) throws SQLException {
+    healthRecorder.record(transaction, true);
+    PaymentEvent event = FlightRecorder.beginPayment();
+    long start = System.nanoTime();
+    Payment payment = null;
+    String fromStatus = null;
+    boolean success = false;
+    try {
+      AoservConnector conn = getAoservConnector(principal);
+      WriteBehindJournal journal = writeBehindJournal;
+      if (journal != null && journalType != null) {
+        // Not waiting on the master: the payment is found and its status checked when replayed,
+        // as the same administrator
+        journal.append(Collections.singletonList(PaymentResult.of(journalType, transaction, conn.getConnectAs())));
+      } else {
+        payment = getPayment(conn, transaction, allowedStatuses);
+        fromStatus = payment.getStatus();
+        completion.complete(payment, transaction);
+      }
+      success = true;
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(operation, err);
       throw new SQLException(err);
+    } finally {
+      Metrics.operationCompleted(operation, start, success);
+      commitEvent(event, operation, transaction, payment, fromStatus, success);
     }
   }
 
+  /**
+   * Implements the batch completions in write-behind mode: all results are appended to the journal
+   * together, sharing one force, without contacting the master.  The payments are found and their
+   * statuses checked when replayed.
+   */
+  private static List<BatchResult<Void>> journalAll(
+      WriteBehindJournal journal,
+      AoservConnector conn,
+      Collection<? extends Transaction> transactions,
+      CreditCardMetrics.Operation operation,
+      HealthRecorder healthRecorder,
+      PaymentResult.Type journalType
+  ) {
+    long start = System.nanoTime();
+    final int size = transactions.size();
+    final List<PaymentResult> results = new ArrayList<>(size);
+    final List<BatchResult<Void>> batchResults = new ArrayList<>(size);
+    for (Transaction transaction : transactions) {
+      // Batches may be completed well after their gateway calls
+      healthRecorder.record(transaction, false);
+      try {
+        results.add(PaymentResult.of(journalType, transaction, conn.getConnectAs()));
+        batchResults.add(null);
+      } catch (RuntimeException err) {
+        batchResults.add(BatchResult.failure(new SQLException(err)));
+        Metrics.operationCompleted(operation, start, false);
+      }
+    }
+    BatchResult<Void> appended;
+    try {
+      journal.append(results);
+      appended = BatchResult.success(null);
+    } catch (IOException err) {
+      Metrics.ioExceptionWrapped(operation, err);
+      appended = BatchResult.failure(new SQLException(err));
+    }
+    for (int i = 0; i < size; i++) {
+      if (batchResults.get(i) == null) {
+        batchResults.set(i, appended);
+        Metrics.operationCompleted(operation, start, appended.isSuccess());
+      }
+    }
+    return Collections.unmodifiableList(batchResults);
+  }
+
+  /**
+   * Implements the batch completions: payments are found and their statuses checked in one pass,
+   * then the updates are sent with several requests in flight at a time.
+   */
+  private static List<BatchResult<Void>> completeAll(
+      Principal principal,
+      Collection<? extends Transaction> transactions,
+      CreditCardMetrics.Operation operation,
+      HealthRecorder healthRecorder,
+      Completion completion,
+      PaymentResult.Type journalType,
+      Transaction.Status ... allowedStatuses
+  ) throws SQLException {
+    final AoservConnector conn = getAoservConnector(principal);
+    WriteBehindJournal journal = writeBehindJournal;
+    if (journal != null && journalType != null) {
+      return journalAll(journal, conn, transactions, operation, healthRecorder, journalType);
+    }
+    final List<CompletedTransaction> completedTransactions = new ArrayList<>(transactions.size());
+    for (Transaction transaction : transactions) {
+      // Batches may be completed well after their gateway calls
+      healthRecorder.record(transaction, false);
+      CompletedTransaction completed = new CompletedTransaction(transaction);
+      try {
+        completed.payment = getPayment(conn, transaction, allowedStatuses);
+      } catch (SQLException err) {
+        completed.error = err;
+      } catch (IOException err) {
+        Metrics.ioExceptionWrapped(operation, err);
+        completed.error = new SQLException(err);
+      } catch (RuntimeException err) {
+        completed.error = new SQLException(err);
+      }
+      completedTransactions.add(completed);
+    }
+    return Batches.run(completedTransactions, completed -> {
+      if (completed.error != null) {
+        throw completed.error;
+      }
+      PaymentEvent event = FlightRecorder.beginPayment();
+      long start = System.nanoTime();
+      String fromStatus = completed.payment.getStatus();
+      boolean success = false;
+      try {
+        completion.complete(completed.payment, completed.transaction);
+        success = true;
+        return null;
+      } catch (IOException err) {
+        Metrics.ioExceptionWrapped(operation, err);
+        throw new SQLException(err);
+      } finally {
+        Metrics.operationCompleted(operation, start, success);
+        commitEvent(event, operation, completed.transaction, completed.payment, fromStatus, success);
+      }
+    });
+  }
+
   /**
    * Stores the results of a sale transaction.
    * <ol>
@@ -493,80 +1114,23 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
    */
   @Override
   public void saleCompleted(Principal principal, Transaction transaction) throws SQLException {
-    try {
-      AoservConnector conn = getAoservConnector(principal);
-      String providerId = transaction.getProviderId();
-      Processor processor = conn.getPayment().getProcessor().get(providerId);
-      if (processor == null) {
-        throw new SQLException("Unable to find Processor: " + providerId);
-      }
-      // Get the stored creditCardTransaction
-      int ccTransactionId = Integer.parseInt(transaction.getPersistenceUniqueId());
-      Payment ccTransaction = conn.getPayment().getPayment().get(ccTransactionId);
-      if (ccTransaction == null) {
-        throw new SQLException("Unable to find Payment: " + ccTransactionId);
-      }
-      if (
-          !ccTransaction.getStatus().equals(Transaction.Status.PROCESSING.name())
-              && !ccTransaction.getStatus().equals(Transaction.Status.AUTHORIZED.name())
-      ) {
-        throw new SQLException(
-            "CreditCardTransaction #" + ccTransactionId + " must have status "
-                + Transaction.Status.PROCESSING.name()
-                + " or "
-                + Transaction.Status.AUTHORIZED.name()
-                + ", its current status is " + ccTransaction.getStatus()
-        );
-      }
+    completeOne(principal, transaction, CreditCardMetrics.Operation.SALE_COMPLETED, ProcessorHealth::record, AoservPersistenceMechanism::saleCompleted, PaymentResult.Type.SALE, PaymentResult.Type.SALE.getAllowedStatuses());
+  }
 
-      AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
-      TransactionResult.CommunicationResult authorizationCommunicationResult = authorizationResult.getCommunicationResult();
-      TransactionResult.ErrorCode authorizationErrorCode = authorizationResult.getErrorCode();
-      AuthorizationResult.ApprovalResult approvalResult = authorizationResult.getApprovalResult();
-      AuthorizationResult.DeclineReason declineReason = authorizationResult.getDeclineReason();
-      AuthorizationResult.ReviewReason reviewReason = authorizationResult.getReviewReason();
-      AuthorizationResult.CvvResult cvvResult = authorizationResult.getCvvResult();
-      AuthorizationResult.AvsResult avsResult = authorizationResult.getAvsResult();
-
-      CaptureResult captureResult = transaction.getCaptureResult();
-      TransactionResult.CommunicationResult captureCommunicationResult = captureResult.getCommunicationResult();
-      TransactionResult.ErrorCode captureErrorCode = captureResult.getErrorCode();
-
-      TokenizedCreditCard tokenizedCreditCard = authorizationResult.getTokenizedCreditCard();
-      ccTransaction.saleCompleted(
-          authorizationCommunicationResult == null ? null : authorizationCommunicationResult.name(),
-          authorizationResult.getProviderErrorCode(),
-          authorizationErrorCode == null ? null : authorizationErrorCode.name(),
-          authorizationResult.getProviderErrorMessage(),
-          authorizationResult.getProviderUniqueId(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementMaskedCardNumber(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementMaskedCardNumber(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementExpiration(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationMonth(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationYear(),
-          authorizationResult.getProviderApprovalResult(),
-          approvalResult == null ? null : approvalResult.name(),
-          authorizationResult.getProviderDeclineReason(),
-          declineReason == null ? null : declineReason.name(),
-          authorizationResult.getProviderReviewReason(),
-          reviewReason == null ? null : reviewReason.name(),
-          authorizationResult.getProviderCvvResult(),
-          cvvResult == null ? null : cvvResult.name(),
-          authorizationResult.getProviderAvsResult(),
-          avsResult == null ? null : avsResult.name(),
-          authorizationResult.getApprovalCode(),
-          transaction.getCaptureTime() == -1 ? null : new Timestamp(transaction.getCaptureTime()),
-          transaction.getCapturePrincipalName(),
-          captureCommunicationResult == null ? null : captureCommunicationResult.name(),
-          captureResult.getProviderErrorCode(),
-          captureErrorCode == null ? null : captureErrorCode.name(),
-          captureResult.getProviderErrorMessage(),
-          captureResult.getProviderUniqueId(),
-          transaction.getStatus().name()
-      );
-    } catch (IOException err) {
-      throw new SQLException(err);
-    }
+  /**
+   * Stores the results of many sale transactions, such as after a batch of gateway responses.<br>
+   * <br>
+   * The stored payments are found and their statuses checked in one pass, then the results are
+   * stored with several requests in flight at a time.  Each transaction succeeds or fails on its own.
+   *
+   * @return  the result for each transaction, in the same order as given
+   *
+   * @throws  SQLException  when the principal is not usable, in which case no results were stored
+   *
+   * @see  #saleCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public List<BatchResult<Void>> saleCompleted(Principal principal, Collection<? extends Transaction> transactions) throws SQLException {
+    return completeAll(principal, transactions, CreditCardMetrics.Operation.SALE_COMPLETED, ProcessorHealth::record, AoservPersistenceMechanism::saleCompleted, PaymentResult.Type.SALE, PaymentResult.Type.SALE.getAllowedStatuses());
   }
 
   /**
@@ -580,66 +1144,56 @@ public final class AoservPersistenceMechanism implements PersistenceMechanism {
    */
   @Override
   public void authorizeCompleted(Principal principal, Transaction transaction) throws SQLException {
-    try {
-      AoservConnector conn = getAoservConnector(principal);
-      String providerId = transaction.getProviderId();
-      Processor processor = conn.getPayment().getProcessor().get(providerId);
-      if (processor == null) {
-        throw new SQLException("Unable to find Processor: " + providerId);
-      }
-      // Get the stored creditCardTransaction
-      int ccTransactionId = Integer.parseInt(transaction.getPersistenceUniqueId());
-      Payment ccTransaction = conn.getPayment().getPayment().get(ccTransactionId);
-      if (ccTransaction == null) {
-        throw new SQLException("Unable to find Payment: " + ccTransactionId);
-      }
-      if (!ccTransaction.getStatus().equals(Transaction.Status.PROCESSING.name())) {
-        throw new SQLException("CreditCardTransaction #" + ccTransactionId + " must have status " + Transaction.Status.PROCESSING.name() + ", its current status is " + ccTransaction.getStatus());
-      }
+    completeOne(principal, transaction, CreditCardMetrics.Operation.AUTHORIZE_COMPLETED, ProcessorHealth::record, AoservPersistenceMechanism::authorizeCompleted, PaymentResult.Type.AUTHORIZE, PaymentResult.Type.AUTHORIZE.getAllowedStatuses());
+  }
 
-      AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
-      TransactionResult.CommunicationResult authorizationCommunicationResult = authorizationResult.getCommunicationResult();
-      TransactionResult.ErrorCode authorizationErrorCode = authorizationResult.getErrorCode();
-      AuthorizationResult.ApprovalResult approvalResult = authorizationResult.getApprovalResult();
-      AuthorizationResult.DeclineReason declineReason = authorizationResult.getDeclineReason();
-      AuthorizationResult.ReviewReason reviewReason = authorizationResult.getReviewReason();
-      AuthorizationResult.CvvResult cvvResult = authorizationResult.getCvvResult();
-      AuthorizationResult.AvsResult avsResult = authorizationResult.getAvsResult();
-
-      TokenizedCreditCard tokenizedCreditCard = authorizationResult.getTokenizedCreditCard();
-      ccTransaction.authorizeCompleted(
-          authorizationCommunicationResult == null ? null : authorizationCommunicationResult.name(),
-          authorizationResult.getProviderErrorCode(),
-          authorizationErrorCode == null ? null : authorizationErrorCode.name(),
-          authorizationResult.getProviderErrorMessage(),
-          authorizationResult.getProviderUniqueId(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementMaskedCardNumber(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementMaskedCardNumber(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementExpiration(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationMonth(),
-          tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationYear(),
-          authorizationResult.getProviderApprovalResult(),
-          approvalResult == null ? null : approvalResult.name(),
-          authorizationResult.getProviderDeclineReason(),
-          declineReason == null ? null : declineReason.name(),
-          authorizationResult.getProviderReviewReason(),
-          reviewReason == null ? null : reviewReason.name(),
-          authorizationResult.getProviderCvvResult(),
-          cvvResult == null ? null : cvvResult.name(),
-          authorizationResult.getProviderAvsResult(),
-          avsResult == null ? null : avsResult.name(),
-          authorizationResult.getApprovalCode(),
-          transaction.getStatus().name()
-      );
-    } catch (IOException err) {
-      throw new SQLException(err);
-    }
+  /**
+   * Stores the results of many authorize transactions, such as after a batch of gateway responses.<br>
+   * <br>
+   * The stored payments are found and their statuses checked in one pass, then the results are
+   * stored with several requests in flight at a time.  Each transaction succeeds or fails on its own.
+   *
+   * @return  the result for each transaction, in the same order as given
+   *
+   * @throws  SQLException  when the principal is not usable, in which case no results were stored
+   *
+   * @see  #authorizeCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public List<BatchResult<Void>> authorizeCompleted(Principal principal, Collection<? extends Transaction> transactions) throws SQLException {
+    return completeAll(principal, transactions, CreditCardMetrics.Operation.AUTHORIZE_COMPLETED, ProcessorHealth::record, AoservPersistenceMechanism::authorizeCompleted, PaymentResult.Type.AUTHORIZE, PaymentResult.Type.AUTHORIZE.getAllowedStatuses());
   }
 
+  /**
+   * Stores the results of a void transaction.
+   * <ol>
+   *   <li>voidTime</li>
+   *   <li>voidPrincipalName</li>
+   *   <li>voidResult</li>
+   *   <li>status</li>
+   * </ol>
+   *
+   * <p>The current status must be AUTHORIZED or CAPTURED.  Unlike authorizeCompleted, a CAPTURED
+   * sale is accepted, since it may still be voided at the provider until its batch settles.</p>
+   */
   @Override
   public void voidCompleted(Principal principal, Transaction transaction) throws SQLException {
-    AoservConnector conn = getAoservConnector(principal);
+    completeOne(principal, transaction, CreditCardMetrics.Operation.VOID_COMPLETED, ProcessorHealth::recordVoid, AoservPersistenceMechanism::voidCompleted, null, VOID_ALLOWED_STATUSES);
+  }
 
-    throw new RuntimeException("TODO: Implement method");
+  /**
+   * Stores the results of many void transactions, such as the end-of-day voids of authorizations
+   * that will not be captured.<br>
+   * <br>
+   * The stored payments are found and their statuses checked in one pass, then the results are
+   * stored with several requests in flight at a time.  Each transaction succeeds or fails on its own.
+   *
+   * @return  the result for each transaction, in the same order as given
+   *
+   * @throws  SQLException  when the principal is not usable, in which case no results were stored
+   *
+   * @see  #voidCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public List<BatchResult<Void>> voidCompleted(Principal principal, Collection<? extends Transaction> transactions) throws SQLException {
+    return completeAll(principal, transactions, CreditCardMetrics.Operation.VOID_COMPLETED, ProcessorHealth::recordVoid, AoservPersistenceMechanism::voidCompleted, null, VOID_ALLOWED_STATUSES);
   }
 }
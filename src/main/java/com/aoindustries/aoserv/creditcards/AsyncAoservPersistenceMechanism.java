@@ -0,0 +1,248 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.lang.security.acl.Group;
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.Transaction;
+import java.security.Principal;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Performs the operations of {@link AoservPersistenceMechanism} without blocking the calling thread.
+ * Each operation runs on the executor of this instance and completes its future with the result, or
+ * exceptionally with the {@link SQLException} or other exception that would have been thrown.
+ *
+ * <p>The default executor uses one virtual thread per operation when the Java runtime supports
+ * virtual threads, and otherwise a bounded pool of daemon threads.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class AsyncAoservPersistenceMechanism {
+
+  /**
+   * An operation that may throw {@link SQLException}.
+   */
+  @FunctionalInterface
+  private interface Operation<T> {
+    T call() throws SQLException;
+  }
+
+  private static final AsyncAoservPersistenceMechanism instance = new AsyncAoservPersistenceMechanism(DefaultExecutors.getExecutor());
+
+  /**
+   * Gets the instance that uses the default executor.
+   */
+  public static AsyncAoservPersistenceMechanism getInstance() {
+    return instance;
+  }
+
+  /**
+   * Gets an instance that runs its operations on the given executor.
+   */
+  public static AsyncAoservPersistenceMechanism getInstance(Executor executor) {
+    return new AsyncAoservPersistenceMechanism(executor);
+  }
+
+  private final AoservPersistenceMechanism persistenceMechanism = AoservPersistenceMechanism.getInstance();
+  private final Executor executor;
+
+  private AsyncAoservPersistenceMechanism(Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor is null");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the executor that runs the operations.
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  private <T> CompletableFuture<T> run(Operation<? extends T> operation) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        if (!future.isDone()) {
+          try {
+            future.complete(operation.call());
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#storeCreditCard(java.security.Principal, com.aoapps.payments.CreditCard)
+   */
+  public CompletableFuture<String> storeCreditCard(Principal principal, CreditCard creditCard) {
+    return run(() -> persistenceMechanism.storeCreditCard(principal, creditCard));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#getCreditCard(java.security.Principal, java.lang.String)
+   */
+  public CompletableFuture<CreditCard> getCreditCard(Principal principal, String persistenceUniqueId) {
+    return run(() -> persistenceMechanism.getCreditCard(principal, persistenceUniqueId));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#getCreditCards(java.security.Principal)
+   */
+  public CompletableFuture<Map<String, CreditCard>> getCreditCards(Principal principal) {
+    return run(() -> persistenceMechanism.getCreditCards(principal));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#getCreditCards(java.security.Principal, java.lang.String)
+   */
+  public CompletableFuture<Map<String, CreditCard>> getCreditCards(Principal principal, String providerId) {
+    return run(() -> persistenceMechanism.getCreditCards(principal, providerId));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#getCreditCardByProviderUniqueId(java.security.Principal, java.lang.String, java.lang.String)
+   */
+  public CompletableFuture<CreditCard> getCreditCardByProviderUniqueId(Principal principal, String providerId, String providerUniqueId) {
+    return run(() -> persistenceMechanism.getCreditCardByProviderUniqueId(principal, providerId, providerUniqueId));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#updateCreditCard(java.security.Principal, com.aoapps.payments.CreditCard)
+   */
+  public CompletableFuture<Void> updateCreditCard(Principal principal, CreditCard creditCard) {
+    return run(() -> {
+      persistenceMechanism.updateCreditCard(principal, creditCard);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#updateCardNumber(java.security.Principal, com.aoapps.payments.CreditCard, java.lang.String, byte, short)
+   */
+  public CompletableFuture<Void> updateCardNumber(Principal principal, CreditCard creditCard, String cardNumber, byte expirationMonth, short expirationYear) {
+    return run(() -> {
+      persistenceMechanism.updateCardNumber(principal, creditCard, cardNumber, expirationMonth, expirationYear);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#updateExpiration(java.security.Principal, com.aoapps.payments.CreditCard, byte, short)
+   */
+  public CompletableFuture<Void> updateExpiration(Principal principal, CreditCard creditCard, byte expirationMonth, short expirationYear) {
+    return run(() -> {
+      persistenceMechanism.updateExpiration(principal, creditCard, expirationMonth, expirationYear);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#deleteCreditCard(java.security.Principal, com.aoapps.payments.CreditCard)
+   */
+  public CompletableFuture<Void> deleteCreditCard(Principal principal, CreditCard creditCard) {
+    return run(() -> {
+      persistenceMechanism.deleteCreditCard(principal, creditCard);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)
+   */
+  public CompletableFuture<String> insertTransaction(Principal principal, Group group, Transaction transaction) {
+    return run(() -> persistenceMechanism.insertTransaction(principal, group, transaction));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#insertTransactions(java.security.Principal, com.aoapps.lang.security.acl.Group, java.util.Collection)
+   */
+  public CompletableFuture<List<BatchResult<String>>> insertTransactions(Principal principal, Group group, Collection<? extends Transaction> transactions) {
+    return run(() -> persistenceMechanism.insertTransactions(principal, group, transactions));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#saleCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public CompletableFuture<Void> saleCompleted(Principal principal, Transaction transaction) {
+    return run(() -> {
+      persistenceMechanism.saleCompleted(principal, transaction);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#saleCompleted(java.security.Principal, java.util.Collection)
+   */
+  public CompletableFuture<List<BatchResult<Void>>> saleCompleted(Principal principal, Collection<? extends Transaction> transactions) {
+    return run(() -> persistenceMechanism.saleCompleted(principal, transactions));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#authorizeCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public CompletableFuture<Void> authorizeCompleted(Principal principal, Transaction transaction) {
+    return run(() -> {
+      persistenceMechanism.authorizeCompleted(principal, transaction);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#authorizeCompleted(java.security.Principal, java.util.Collection)
+   */
+  public CompletableFuture<List<BatchResult<Void>>> authorizeCompleted(Principal principal, Collection<? extends Transaction> transactions) {
+    return run(() -> persistenceMechanism.authorizeCompleted(principal, transactions));
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#voidCompleted(java.security.Principal, com.aoapps.payments.Transaction)
+   */
+  public CompletableFuture<Void> voidCompleted(Principal principal, Transaction transaction) {
+    return run(() -> {
+      persistenceMechanism.voidCompleted(principal, transaction);
+      return null;
+    });
+  }
+
+  /**
+   * @see  AoservPersistenceMechanism#voidCompleted(java.security.Principal, java.util.Collection)
+   */
+  public CompletableFuture<List<BatchResult<Void>>> voidCompleted(Principal principal, Collection<? extends Transaction> transactions) {
+    return run(() -> persistenceMechanism.voidCompleted(principal, transactions));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.sql.SQLException;
+
+/**
+ * The outcome of one item of a batch operation.  Each item succeeds or fails on its own,
+ * so one failure does not hide the items that were already persisted.
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class BatchResult<T> {
+
+  static <T> BatchResult<T> success(T value) {
+    return new BatchResult<>(value, null);
+  }
+
+  static <T> BatchResult<T> failure(SQLException exception) {
+    return new BatchResult<>(null, exception);
+  }
+
+  private final T value;
+  private final SQLException exception;
+
+  private BatchResult(T value, SQLException exception) {
+    this.value = value;
+    this.exception = exception;
+  }
+
+  @Override
+  public String toString() {
+    return exception == null ? String.valueOf(value) : exception.toString();
+  }
+
+  /**
+   * Did this item succeed.
+   */
+  public boolean isSuccess() {
+    return exception == null;
+  }
+
+  /**
+   * Gets the value of this item.
+   *
+   * @throws  SQLException  when this item failed
+   */
+  public T getValue() throws SQLException {
+    if (exception != null) {
+      throw exception;
+    }
+    return value;
+  }
+
+  /**
+   * Gets why this item failed or {@code null} when it succeeded.
+   */
+  public SQLException getException() {
+    return exception;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the items of a batch with a bounded number of requests in flight.  The
+ * {@link com.aoindustries.aoserv.client.AoservConnector} sends concurrent requests over separate
+ * pooled connections, so keeping several requests in flight overlaps their round trips.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Batches {
+
+  /**
+   * The default number of requests kept in flight by one batch.
+   */
+  static final int DEFAULT_CONCURRENCY = 8;
+
+  /**
+   * Processes one item of a batch.
+   */
+  @FunctionalInterface
+  interface Task<T, R> {
+    R run(T item) throws SQLException;
+  }
+
+  private static volatile int concurrency = DEFAULT_CONCURRENCY;
+
+  private static volatile Executor executor = DefaultExecutors.getExecutor();
+
+  private Batches() {
+    // Make no instances
+  }
+
+  static void setConcurrency(int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency < 1: " + concurrency);
+    }
+    Batches.concurrency = concurrency;
+  }
+
+  /**
+   * Sets the executor that runs the additional in-flight requests of each batch,
+   * or {@code null} to restore the default.
+   */
+  static void setExecutor(Executor executor) {
+    Batches.executor = executor == null ? DefaultExecutors.getExecutor() : executor;
+  }
+
+  /**
+   * Runs the task for every item, returning the results in item order.  The calling thread
+   * takes part in the batch, and the call returns only once every item has completed.<br>
+   * <br>
+   * Only items already taken by another thread are waited for, never helpers still queued in the
+   * executor, so a batch completes even when the executor is saturated, such as by the batches
+   * themselves.<br>
+   * <br>
+   * Every item has a result: anything thrown by the task other than a {@link SQLException},
+   * including an {@link Error}, is wrapped in a {@link SQLException} as the failure of its item.
+   */
+  static <T, R> List<BatchResult<R>> run(List<? extends T> items, Task<? super T, ? extends R> task) {
+    final int size = items.size();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final BatchResult<R>[] results = new BatchResult[size];
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch completed = new CountDownLatch(size);
+    Runnable worker = () -> {
+      int index;
+      while ((index = next.getAndIncrement()) < size) {
+        try {
+          BatchResult<R> result;
+          try {
+            result = BatchResult.success(task.run(items.get(index)));
+          } catch (SQLException err) {
+            result = BatchResult.failure(err);
+          } catch (Throwable t) {
+            // Including errors, which would otherwise leave no result for the item
+            result = BatchResult.failure(new SQLException(t));
+          }
+          results[index] = result;
+        } finally {
+          completed.countDown();
+        }
+      }
+    };
+    int helpers = Math.min(concurrency, size) - 1;
+    if (helpers > 0) {
+      Executor ex = executor;
+      for (int i = 0; i < helpers; i++) {
+        try {
+          ex.execute(worker);
+        } catch (RejectedExecutionException err) {
+          // The calling thread will process the items instead
+          break;
+        }
+      }
+      worker.run();
+      // Items already started must finish before their results are returned
+      boolean interrupted = false;
+      while (true) {
+        try {
+          completed.await();
+          break;
+        } catch (InterruptedException err) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    } else {
+      worker.run();
+    }
+    return Collections.unmodifiableList(Arrays.asList(results));
+  }
+}
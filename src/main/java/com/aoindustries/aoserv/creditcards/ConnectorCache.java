@@ -0,0 +1,265 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.hodgepodge.table.Table;
+import com.aoapps.hodgepodge.table.TableListener;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.AoservTable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Holds one value per {@link AoservConnector}, loaded on first use and discarded whenever
+ * any of its tables are updated.  Connectors are weakly referenced, so caching a value does
+ * not prevent a connector from being garbage collected.
+ *
+ * <p>Lookups never lock.  When two threads load the same value concurrently, both are
+ * computed and the last one published wins.  A value loaded while its tables were being
+ * updated is returned to its caller but not published.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ConnectorCache<V> {
+
+  /**
+   * Loads the value for a connector.
+   */
+  @FunctionalInterface
+  interface Loader<V> {
+    V load(AoservConnector conn) throws IOException, SQLException;
+  }
+
+  /**
+   * A key of the entries, comparing connectors by identity.
+   */
+  private interface Key {
+    AoservConnector getConnector();
+  }
+
+  private static boolean equals(Key key, Object obj) {
+    if (obj == key) {
+      return true;
+    }
+    if (!(obj instanceof Key)) {
+      return false;
+    }
+    AoservConnector conn = key.getConnector();
+    return conn != null && conn == ((Key) obj).getConnector();
+  }
+
+  /**
+   * Weakly references a connector, stored in the entries.
+   */
+  private static final class ConnectorKey extends WeakReference<AoservConnector> implements Key {
+
+    private final int hash;
+
+    private ConnectorKey(AoservConnector conn, ReferenceQueue<AoservConnector> queue) {
+      super(conn, queue);
+      this.hash = System.identityHashCode(conn);
+    }
+
+    @Override
+    public AoservConnector getConnector() {
+      return get();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return ConnectorCache.equals(this, obj);
+    }
+  }
+
+  /**
+   * Strongly references a connector, only to look up entries, so that lookups do not create
+   * references for the garbage collector to process.
+   */
+  private static final class LookupKey implements Key {
+
+    private final AoservConnector conn;
+
+    private LookupKey(AoservConnector conn) {
+      this.conn = conn;
+    }
+
+    @Override
+    public AoservConnector getConnector() {
+      return conn;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(conn);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return ConnectorCache.equals(this, obj);
+    }
+  }
+
+  private static final class Loaded<V> {
+    private final int version;
+    private final V value;
+
+    private Loaded(int version, V value) {
+      this.version = version;
+      this.value = value;
+    }
+  }
+
+  private static final class Entry<V> {
+    /**
+     * Incremented on every invalidation.
+     */
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Loaded<V> loaded;
+  }
+
+  private final Function<? super AoservConnector, ? extends List<? extends AoservTable<?, ?>>> tables;
+  private final Loader<? extends V> loader;
+  private final Consumer<? super AoservConnector> invalidationListener;
+  private final ConcurrentMap<Key, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final ReferenceQueue<AoservConnector> queue = new ReferenceQueue<>();
+
+  /**
+   * Creates a new cache.
+   *
+   * @param  tables                the tables that, when updated, invalidate the value for a connector
+   * @param  loader                loads the value for a connector
+   * @param  invalidationListener  notified after the value for a connector is invalidated, may be {@code null}
+   */
+  ConnectorCache(
+      Function<? super AoservConnector, ? extends List<? extends AoservTable<?, ?>>> tables,
+      Loader<? extends V> loader,
+      Consumer<? super AoservConnector> invalidationListener
+  ) {
+    this.tables = tables;
+    this.loader = loader;
+    this.invalidationListener = invalidationListener;
+  }
+
+  /**
+   * Creates a new cache without an invalidation listener.
+   *
+   * @see  #ConnectorCache(java.util.function.Function, com.aoindustries.aoserv.creditcards.ConnectorCache.Loader, java.util.function.Consumer)
+   */
+  ConnectorCache(
+      Function<? super AoservConnector, ? extends List<? extends AoservTable<?, ?>>> tables,
+      Loader<? extends V> loader
+  ) {
+    this(tables, loader, null);
+  }
+
+  private void expungeStaleEntries() {
+    Reference<? extends AoservConnector> ref;
+    while ((ref = queue.poll()) != null) {
+      entries.remove((ConnectorKey) ref);
+    }
+  }
+
+  /**
+   * Gets the entry for a connector, adding table listeners when first seen.
+   */
+  private Entry<V> getEntry(AoservConnector conn) {
+    Entry<V> entry = entries.get(new LookupKey(conn));
+    if (entry == null) {
+      expungeStaleEntries();
+      Entry<V> newEntry = new Entry<>();
+      entry = entries.putIfAbsent(new ConnectorKey(conn, queue), newEntry);
+      if (entry == null) {
+        entry = newEntry;
+        // The listener must not reference the connector, since the table holds it strongly
+        TableListener listener = (Table<?> table) -> invalidate(newEntry, ((AoservTable<?, ?>) table).getConnector());
+        for (AoservTable<?, ?> table : tables.apply(conn)) {
+          table.addTableListener(listener, 0);
+        }
+      }
+    }
+    return entry;
+  }
+
+  private void invalidate(Entry<V> entry, AoservConnector conn) {
+    entry.version.incrementAndGet();
+    entry.loaded = null;
+    if (invalidationListener != null) {
+      invalidationListener.accept(conn);
+    }
+  }
+
+  /**
+   * Starts listening for updates to the tables of a connector, without loading its value.
+   */
+  void register(AoservConnector conn) {
+    getEntry(conn);
+  }
+
+  /**
+   * Gets the value for a connector only when already loaded and not invalidated since, without
+   * loading it or adding table listeners.
+   *
+   * @return  the loaded value or {@code null} when none
+   */
+  V getIfLoaded(AoservConnector conn) {
+    Entry<V> entry = entries.get(new LookupKey(conn));
+    if (entry == null) {
+      return null;
+    }
+    Loaded<V> loaded = entry.loaded;
+    return loaded == null ? null : loaded.value;
+  }
+
+  /**
+   * Gets the value for a connector, loading it when not yet loaded or invalidated since last loaded.
+   */
+  V get(AoservConnector conn) throws IOException, SQLException {
+    Entry<V> entry = getEntry(conn);
+    int version = entry.version.get();
+    Loaded<V> loaded = entry.loaded;
+    if (loaded != null && loaded.version == version) {
+      return loaded.value;
+    }
+    V value = loader.load(conn);
+    // Do not publish when invalidated during load
+    if (entry.version.get() == version) {
+      entry.loaded = new Loaded<>(version, value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.CreditCard;
+import com.aoindustries.aoserv.client.AoservConnector;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An optional, read-through cache of converted {@link CreditCard credit cards} by ID, one per connector
+ * since each connector may see different cards.  Least recently used cards are evicted beyond the
+ * {@link #setMaximumSize(int) maximum size}.
+ *
+ * <p>The cache of a connector is discarded whenever its credit card, processor, or country code
+ * tables change.  Writes through {@link AoservPersistenceMechanism} also invalidate their card
+ * immediately, without waiting for the table change to be seen.</p>
+ *
+ * <p>Cached cards are never handed out directly: each call returns a copy, since
+ * {@link CreditCard} is mutable.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class CreditCardCache {
+
+  /**
+   * The maximum number of cards cached per connector, where {@code 0} disables caching.
+   */
+  private static volatile int maximumSize;
+
+  private static final ConnectorCache<CreditCardCache> caches = new ConnectorCache<>(
+      conn -> List.of(
+          conn.getPayment().getCreditCard(),
+          conn.getPayment().getProcessor(),
+          conn.getPayment().getCountryCode()
+      ),
+      conn -> new CreditCardCache()
+  );
+
+  /**
+   * Sets the maximum number of cards cached per connector, where {@code 0} disables caching.
+   * Existing caches shrink as they are next used.
+   */
+  static void setMaximumSize(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    CreditCardCache.maximumSize = maximumSize;
+  }
+
+  private static CreditCard load(AoservConnector conn, int id) throws IOException, SQLException {
+    com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard = conn.getPayment().getCreditCard().get(id);
+    return aoservCreditCard == null ? null : CreditCardFactory.getCreditCard(aoservCreditCard);
+  }
+
+  /**
+   * Gets a card, from the cache when enabled.
+   *
+   * @return  a new copy of the card or {@code null} when not found
+   */
+  static CreditCard getCreditCard(AoservConnector conn, int id) throws IOException, SQLException {
+    int max = maximumSize;
+    if (max == 0) {
+      return load(conn, id);
+    }
+    CreditCardCache cache = caches.get(conn);
+    Integer key = id;
+    long writes;
+    cache.lock.lock();
+    try {
+      CreditCard cached = cache.cards.get(key);
+      if (cached != null) {
+        return CreditCardFactory.copy(cached);
+      }
+      writes = cache.writes;
+    } finally {
+      cache.lock.unlock();
+    }
+    // Load without holding the lock
+    CreditCard loaded = load(conn, id);
+    if (loaded != null) {
+      cache.lock.lock();
+      try {
+        // Do not cache a card that was written to while loading
+        if (cache.writes == writes) {
+          cache.cards.put(key, CreditCardFactory.copy(loaded));
+          while (cache.cards.size() > max) {
+            cache.cards.remove(cache.cards.keySet().iterator().next());
+          }
+        }
+      } finally {
+        cache.lock.unlock();
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Discards a card after it has been written to.  Runs even while caching is disabled, so that
+   * cards cached before disabling are not served stale once enabled again, and never throws, so
+   * that it may be called from a {@code finally} block without masking the original exception.
+   */
+  static void invalidate(AoservConnector conn, int id) {
+    // Nothing to discard when not yet loaded, and a cache loaded later will read after this write
+    CreditCardCache cache = caches.getIfLoaded(conn);
+    if (cache != null) {
+      cache.lock.lock();
+      try {
+        cache.writes++;
+        if (maximumSize == 0) {
+          // Release everything while disabled
+          cache.cards.clear();
+        } else {
+          cache.cards.remove(id);
+        }
+      } finally {
+        cache.lock.unlock();
+      }
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * In access order, for least recently used eviction.  Guarded by lock.
+   */
+  private final Map<Integer, CreditCard> cards = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Incremented on every invalidation.  Guarded by lock.
+   */
+  private long writes;
+
+  private CreditCardCache() {
+    // Created through caches
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
- * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2015, 2016, 2018, 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2015, 2016, 2018, 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -24,12 +24,17 @@
 package com.aoindustries.aoserv.creditcards;
 
 import com.aoapps.payments.CreditCard;
+import com.aoindustries.aoserv.client.payment.CountryCode;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Creates instances of {@link CreditCard} based on {@link com.aoindustries.aoserv.client.payment.CreditCard the AOServ object}.
+ * This is the one mapping used throughout, including by {@link AoservPersistenceMechanism}.
  *
  * @author  AO Industries, Inc.
  */
@@ -40,17 +45,79 @@ public final class CreditCardFactory {
     throw new AssertionError();
   }
 
+  /**
+   * The number of cached ID strings, a power of two.
+   */
+  private static final int ID_CACHE_SIZE = 1 << 14;
+
+  /**
+   * An ID with its string form.
+   */
+  private static final class IdString {
+    private final int id;
+    private final String string;
+
+    private IdString(int id) {
+      this.id = id;
+      this.string = Integer.toString(id);
+    }
+  }
+
+  /**
+   * The string form of recently converted IDs, direct-mapped by the low bits of the ID.
+   * Rows are converted repeatedly, so most conversions find their ID string here.
+   */
+  private static final AtomicReferenceArray<IdString> idStrings = new AtomicReferenceArray<>(ID_CACHE_SIZE);
+
+  /**
+   * One canonical instance of each provider ID, so that converted cards share their provider ID
+   * strings across table reloads.
+   */
+  private static final ConcurrentMap<String, String> providerIds = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the string form of an ID, without allocating when recently used.
+   */
+  static String getIdString(int id) {
+    int index = id & (ID_CACHE_SIZE - 1);
+    IdString idString = idStrings.get(index);
+    if (idString == null || idString.id != id) {
+      idString = new IdString(id);
+      idStrings.set(index, idString);
+    }
+    return idString.string;
+  }
+
+  /**
+   * Gets the canonical instance of a provider ID.
+   */
+  static String internProviderId(String providerId) {
+    String existing = providerIds.putIfAbsent(providerId, providerId);
+    return existing == null ? providerId : existing;
+  }
+
   /**
    * Creates processor CreditCard beans from AOServ CreditCards.
    */
   public static CreditCard getCreditCard(com.aoindustries.aoserv.client.payment.CreditCard creditCard) throws SQLException, IOException {
+    return getCreditCard(creditCard, null);
+  }
+
+  /**
+   * Creates processor CreditCard beans from AOServ CreditCards, when the provider is already known.
+   * This avoids resolving the processor of each card, such as when converting all the cards of one processor.
+   *
+   * @param  providerId  the provider ID of the card's processor or {@code null} to resolve it from the card
+   */
+  public static CreditCard getCreditCard(com.aoindustries.aoserv.client.payment.CreditCard creditCard, String providerId) throws SQLException, IOException {
     Byte expirationMonth = creditCard.getExpirationMonth();
     Short expirationYear = creditCard.getExpirationYear();
+    CountryCode countryCode = creditCard.getCountryCode();
     return new CreditCard(
-        Integer.toString(creditCard.getPkey()),
+        getIdString(creditCard.getPkey()),
         creditCard.getPrincipalName(),
         creditCard.getGroupName(),
-        creditCard.getCreditCardProcessor().getProviderId(),
+        internProviderId(providerId != null ? providerId : creditCard.getCreditCardProcessor().getProviderId()),
         creditCard.getProviderUniqueId(),
         null, // cardNumber
         creditCard.getCardInfo(),
@@ -70,8 +137,48 @@ public final class CreditCardFactory {
         creditCard.getCity(),
         creditCard.getState(),
         creditCard.getPostalCode(),
-        creditCard.getCountryCode().getCode(),
+        countryCode == null ? null : countryCode.getCode(),
         creditCard.getDescription()
     );
   }
+
+  /**
+   * Copies a card, so that a cached card is never modified by its users.
+   */
+  static CreditCard copy(CreditCard creditCard) {
+    return copy(creditCard, creditCard.getMaskedCardNumber());
+  }
+
+  /**
+   * Copies a card with a different masked card number, such as one replaced by the provider.
+   */
+  static CreditCard copy(CreditCard creditCard, String maskedCardNumber) {
+    return new CreditCard(
+        creditCard.getPersistenceUniqueId(),
+        creditCard.getPrincipalName(),
+        creditCard.getGroupName(),
+        creditCard.getProviderId(),
+        creditCard.getProviderUniqueId(),
+        creditCard.getCardNumber(),
+        maskedCardNumber,
+        creditCard.getExpirationMonth(),
+        creditCard.getExpirationYear(),
+        creditCard.getCardCode(),
+        creditCard.getFirstName(),
+        creditCard.getLastName(),
+        creditCard.getCompanyName(),
+        creditCard.getEmail(),
+        creditCard.getPhone(),
+        creditCard.getFax(),
+        creditCard.getCustomerId(),
+        creditCard.getCustomerTaxId(),
+        creditCard.getStreetAddress1(),
+        creditCard.getStreetAddress2(),
+        creditCard.getCity(),
+        creditCard.getState(),
+        creditCard.getPostalCode(),
+        creditCard.getCountryCode(),
+        creditCard.getComments()
+    );
+  }
 }
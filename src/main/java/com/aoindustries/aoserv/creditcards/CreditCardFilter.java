@@ -0,0 +1,167 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.time.YearMonth;
+import java.util.Objects;
+
+/**
+ * Selects which stored credit cards are returned by
+ * {@link AoservPersistenceMechanism#getCreditCardStream(java.security.Principal, com.aoindustries.aoserv.creditcards.CreditCardFilter)}.
+ * Immutable; each <code>with…</code> method returns a new filter.
+ *
+ * <p>Filters are evaluated against the stored rows before they are converted, so cards that
+ * do not match are never copied.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class CreditCardFilter {
+
+  /**
+   * Matches all credit cards.
+   */
+  public static final CreditCardFilter ALL = new CreditCardFilter(null, null, null, null);
+
+  private final String groupName;
+  private final String providerId;
+  private final YearMonth expiresFrom;
+  private final YearMonth expiresTo;
+
+  private CreditCardFilter(String groupName, String providerId, YearMonth expiresFrom, YearMonth expiresTo) {
+    this.groupName = groupName;
+    this.providerId = providerId;
+    this.expiresFrom = expiresFrom;
+    this.expiresTo = expiresTo;
+  }
+
+  /**
+   * Matches only credit cards with the given application-provided group name.
+   *
+   * @param  groupName  the group name or {@code null} for any group
+   */
+  public CreditCardFilter withGroupName(String groupName) {
+    return new CreditCardFilter(groupName, providerId, expiresFrom, expiresTo);
+  }
+
+  /**
+   * Matches only credit cards stored for the given provider.
+   *
+   * @param  providerId  the provider or {@code null} for any provider
+   */
+  public CreditCardFilter withProviderId(String providerId) {
+    return new CreditCardFilter(groupName, providerId, expiresFrom, expiresTo);
+  }
+
+  /**
+   * Matches only credit cards expiring within the given months, inclusive.
+   * Credit cards with an unknown expiration never match an expiration window.
+   *
+   * @param  expiresFrom  the first month or {@code null} for no lower bound
+   * @param  expiresTo    the last month or {@code null} for no upper bound
+   */
+  public CreditCardFilter withExpiration(YearMonth expiresFrom, YearMonth expiresTo) {
+    if (expiresFrom != null && expiresTo != null && expiresFrom.isAfter(expiresTo)) {
+      throw new IllegalArgumentException("expiresFrom > expiresTo: " + expiresFrom + " > " + expiresTo);
+    }
+    return new CreditCardFilter(groupName, providerId, expiresFrom, expiresTo);
+  }
+
+  /**
+   * Gets the group name or {@code null} for any group.
+   */
+  public String getGroupName() {
+    return groupName;
+  }
+
+  /**
+   * Gets the provider or {@code null} for any provider.
+   */
+  public String getProviderId() {
+    return providerId;
+  }
+
+  /**
+   * Gets the first month of the expiration window or {@code null} for no lower bound.
+   */
+  public YearMonth getExpiresFrom() {
+    return expiresFrom;
+  }
+
+  /**
+   * Gets the last month of the expiration window or {@code null} for no upper bound.
+   */
+  public YearMonth getExpiresTo() {
+    return expiresTo;
+  }
+
+  /**
+   * Checks if a stored credit card matches this filter.
+   */
+  boolean matches(com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard) {
+    if (groupName != null && !groupName.equals(aoservCreditCard.getGroupName())) {
+      return false;
+    }
+    if (expiresFrom != null || expiresTo != null) {
+      Byte expirationMonth = aoservCreditCard.getExpirationMonth();
+      Short expirationYear = aoservCreditCard.getExpirationYear();
+      if (expirationMonth == null || expirationYear == null) {
+        return false;
+      }
+      int expiration = expirationYear * 12 + (expirationMonth - 1);
+      if (expiresFrom != null && expiration < expiresFrom.getYear() * 12 + (expiresFrom.getMonthValue() - 1)) {
+        return false;
+      }
+      if (expiresTo != null && expiration > expiresTo.getYear() * 12 + (expiresTo.getMonthValue() - 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof CreditCardFilter)) {
+      return false;
+    }
+    CreditCardFilter other = (CreditCardFilter) obj;
+    return
+        Objects.equals(groupName, other.groupName)
+            && Objects.equals(providerId, other.providerId)
+            && Objects.equals(expiresFrom, other.expiresFrom)
+            && Objects.equals(expiresTo, other.expiresTo);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(groupName, providerId, expiresFrom, expiresTo);
+  }
+
+  @Override
+  public String toString() {
+    return "CreditCardFilter(groupName=" + groupName
+        + ", providerId=" + providerId
+        + ", expiresFrom=" + expiresFrom
+        + ", expiresTo=" + expiresTo + ')';
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.io.IOException;
+
+/**
+ * Receives measurements from {@link AoservPersistenceMechanism} and {@link CreditCardProcessorFactory},
+ * so that the time of a checkout can be attributed to the AOServ round trips, the processor cache,
+ * or elsewhere.  Every method does nothing by default, so an adapter, such as to Micrometer or JFR,
+ * implements only what it records.
+ *
+ * <p>Methods are called on the thread doing the work, often on the hot path and concurrently, so
+ * must be thread-safe and fast.  They must not throw.</p>
+ *
+ * <p>No metrics are recorded until {@link #setInstance(com.aoindustries.aoserv.creditcards.CreditCardMetrics)}
+ * is called.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface CreditCardMetrics {
+
+  /**
+   * The measured operations of {@link AoservPersistenceMechanism}.
+   */
+  enum Operation {
+    STORE_CREDIT_CARD,
+    GET_CREDIT_CARD,
+    GET_CREDIT_CARDS,
+    UPDATE_CREDIT_CARD,
+    UPDATE_CARD_NUMBER,
+    UPDATE_EXPIRATION,
+    DELETE_CREDIT_CARD,
+    INSERT_TRANSACTION,
+    SALE_COMPLETED,
+    AUTHORIZE_COMPLETED,
+    VOID_COMPLETED
+  }
+
+  /**
+   * Records nothing.
+   */
+  CreditCardMetrics NONE = new CreditCardMetrics() {
+    // All defaults
+  };
+
+  /**
+   * Gets the metrics currently receiving measurements.
+   */
+  static CreditCardMetrics getInstance() {
+    return Metrics.instance;
+  }
+
+  /**
+   * Sets the metrics to receive all measurements, or {@code null} for {@link #NONE}.
+   */
+  static void setInstance(CreditCardMetrics metrics) {
+    Metrics.instance = metrics == null ? NONE : metrics;
+  }
+
+  /**
+   * Called once an operation completes, with its elapsed time.  Only the hot-path operations
+   * {@link Operation#STORE_CREDIT_CARD}, {@link Operation#INSERT_TRANSACTION},
+   * {@link Operation#SALE_COMPLETED}, {@link Operation#AUTHORIZE_COMPLETED}, and
+   * {@link Operation#VOID_COMPLETED} are timed.  For batches, each item is timed from when its
+   * write begins.
+   *
+   * @param  success  {@code false} when the operation threw an exception
+   */
+  default void operationCompleted(Operation operation, long nanos, boolean success) {
+    // Nothing by default
+  }
+
+  /**
+   * Called when an {@link IOException} talking to the master is wrapped into the
+   * {@link java.sql.SQLException} thrown by an operation.
+   */
+  default void ioExceptionWrapped(Operation operation, IOException cause) {
+    // Nothing by default
+  }
+
+  /**
+   * Called when {@link CreditCardProcessorFactory} selects a processor by weight.
+   */
+  default void processorSelected(String providerId) {
+    // Nothing by default
+  }
+
+  /**
+   * Called when a processor is found already created in the cache of {@link CreditCardProcessorFactory}.
+   */
+  default void processorCacheHit(String providerId) {
+    // Nothing by default
+  }
+
+  /**
+   * Called when a processor is not in the cache of {@link CreditCardProcessorFactory}, before it is created.
+   */
+  default void processorCacheMiss(String providerId) {
+    // Nothing by default
+  }
+
+  /**
+   * Called once a processor has been created for the cache of {@link CreditCardProcessorFactory},
+   * with the time taken to create it.
+   *
+   * @param  success  {@code false} when the provider could not be created
+   */
+  default void processorConstructed(String providerId, long nanos, boolean success) {
+    // Nothing by default
+  }
+
+  /**
+   * Called when {@link WriteBehindJournal} gives up on a record and moves it to its rejected file,
+   * such as when its payment is missing or has another status, or when the record is unreadable.
+   *
+   * @param  providerId  the provider of the payment or {@code null} when the record is unreadable
+   */
+  default void journalRecordRejected(String providerId, String reason) {
+    // Nothing by default
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
- * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2015, 2016, 2018, 2019, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2007, 2008, 2009, 2010, 2011, 2012, 2015, 2016, 2018, 2019, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,17 +23,35 @@
 
 package com.aoindustries.aoserv.creditcards;
 
+import com.aoapps.lang.exception.WrappedException;
 import com.aoapps.payments.CreditCardProcessor;
 import com.aoapps.payments.MerchantServicesProvider;
-import com.aoapps.payments.MerchantServicesProviderFactory;
 import com.aoindustries.aoserv.client.AoservConnector;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Creates instances of {@link CreditCardProcessor} based on the processor
@@ -42,10 +60,26 @@ import java.util.Objects;
  * will not be returned.  When multiple processors are enabled for an account,
  * adheres to the weight provided by the processors.
  *
+ * <p>Instances are cached up to a {@linkplain #setMaximumCacheSize(int) maximum size} and are
+ * evicted once {@linkplain #setCacheIdleTimeout(java.time.Duration) idle}.  When a processor's
+ * configuration is changed in the AOServ Platform, the instance for its previous configuration
+ * is evicted as soon as the update is seen.  Evicted {@link MerchantServicesProvider providers}
+ * are {@linkplain AutoCloseable#close() closed} when they implement {@link AutoCloseable}.
+ * Eviction does not wait for a transaction already using the processor, so an
+ * {@link AutoCloseable} provider must either tolerate being closed while in use, or the cache must
+ * be sized and timed so its processors are not evicted while in use.</p>
+ *
+ * <p>No monitor is held while a provider is constructed or while waiting on the AOServ Platform.
+ * Threads needing a provider that is still being constructed by another thread park on its
+ * {@link FutureTask}, so large numbers of virtual threads do not pin their carrier threads.
+ * Processors may be {@linkplain #warmUp(java.util.Collection) constructed ahead of time} at startup.</p>
+ *
  * @author  AO Industries, Inc.
  */
 public final class CreditCardProcessorFactory {
 
+  private static final Logger logger = Logger.getLogger(CreditCardProcessorFactory.class.getName());
+
   /** Make no instances. */
   private CreditCardProcessorFactory() {
     throw new AssertionError();
@@ -75,6 +109,17 @@ public final class CreditCardProcessorFactory {
       this.param4 = param4;
     }
 
+    private ProcessorKey(com.aoindustries.aoserv.client.payment.Processor processor) {
+      this(
+          processor.getProviderId(),
+          processor.getClassName(),
+          processor.getParam1(),
+          processor.getParam2(),
+          processor.getParam3(),
+          processor.getParam4()
+      );
+    }
+
     @Override
     public int hashCode() {
       return
@@ -102,7 +147,331 @@ public final class CreditCardProcessorFactory {
     }
   }
 
-  private static final Map<ProcessorKey, CreditCardProcessor> processors = new HashMap<>();
+  /**
+   * A created provider along with the processor that uses it.
+   */
+  private static final class Instance {
+    private final MerchantServicesProvider provider;
+    private final CreditCardProcessor processor;
+    private final long constructionNanos;
+
+    private Instance(MerchantServicesProvider provider, CreditCardProcessor processor, long constructionNanos) {
+      this.provider = provider;
+      this.processor = processor;
+      this.constructionNanos = constructionNanos;
+    }
+  }
+
+  private static final class CacheEntry {
+    private final FutureTask<Instance> future;
+    private volatile long lastAccessed;
+
+    private CacheEntry(FutureTask<Instance> future, long lastAccessed) {
+      this.future = future;
+      this.lastAccessed = lastAccessed;
+    }
+  }
+
+  /**
+   * The default maximum number of cached processors.
+   */
+  public static final int DEFAULT_MAXIMUM_CACHE_SIZE = 100;
+
+  /**
+   * The default time a cached processor may go unused before it is evicted.
+   */
+  public static final Duration DEFAULT_CACHE_IDLE_TIMEOUT = Duration.ofHours(1);
+
+  /**
+   * How often idle processors are looked for while all requests are cache hits.
+   */
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /**
+   * The resolution of last access times.
+   */
+  private static final long ACCESS_GRANULARITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static volatile int maximumCacheSize = DEFAULT_MAXIMUM_CACHE_SIZE;
+  private static volatile long cacheIdleTimeoutNanos = DEFAULT_CACHE_IDLE_TIMEOUT.toNanos();
+  private static final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+  /**
+   * Each processor is created once by the first thread to request it, while other threads
+   * wait on its future.  Lookups of existing processors never lock, and the creation of one
+   * processor does not block lookups of any other.
+   */
+  private static final ConcurrentMap<ProcessorKey, CacheEntry> processors = new ConcurrentHashMap<>();
+
+  /**
+   * Listens for updates to the processor table of each connector, evicting processors
+   * whose configuration has changed.
+   */
+  private static final ConnectorCache<Boolean> processorTableListeners = new ConnectorCache<>(
+      conn -> List.of(conn.getPayment().getProcessor()),
+      conn -> Boolean.TRUE,
+      CreditCardProcessorFactory::evictChanged
+  );
+
+  /**
+   * The enabled processors for the account of each connector, rebuilt only when the
+   * processor table, or the tables leading from the administrator to the account, are updated.
+   */
+  private static final ConnectorCache<ProcessorRouting> routings = new ConnectorCache<>(
+      conn -> List.of(
+          conn.getPayment().getProcessor(),
+          conn.getAccount().getAdministrator(),
+          conn.getAccount().getUser(),
+          conn.getBilling().getPackage()
+      ),
+      conn -> {
+        // Listen once per connector, instead of on every selection
+        processorTableListeners.register(conn);
+        return new ProcessorRouting(conn.getCurrentAdministrator().getUsername().getPackage().getAccount().getCreditCardProcessors());
+      }
+  );
+
+  /**
+   * Sets the maximum number of cached processors.  When exceeded, the least recently used
+   * processors are evicted.
+   *
+   * @see  #DEFAULT_MAXIMUM_CACHE_SIZE
+   */
+  public static void setMaximumCacheSize(int maximumCacheSize) {
+    if (maximumCacheSize < 1) {
+      throw new IllegalArgumentException("maximumCacheSize < 1: " + maximumCacheSize);
+    }
+    CreditCardProcessorFactory.maximumCacheSize = maximumCacheSize;
+    evict(System.nanoTime());
+  }
+
+  /**
+   * Sets the time a cached processor may go unused before it is evicted.
+   *
+   * @see  #DEFAULT_CACHE_IDLE_TIMEOUT
+   */
+  public static void setCacheIdleTimeout(Duration cacheIdleTimeout) {
+    if (cacheIdleTimeout.isNegative() || cacheIdleTimeout.isZero()) {
+      throw new IllegalArgumentException("cacheIdleTimeout <= 0: " + cacheIdleTimeout);
+    }
+    CreditCardProcessorFactory.cacheIdleTimeoutNanos = cacheIdleTimeout.toNanos();
+    evict(System.nanoTime());
+  }
+
+  /**
+   * Enables or disables health-aware routing, which is disabled by default.<br>
+   * <br>
+   * When enabled, the latency and communication errors of each provider are tracked from the
+   * transactions passed to {@link AoservPersistenceMechanism#authorizeCompleted(java.security.Principal, com.aoapps.payments.Transaction)}
+   * and {@link AoservPersistenceMechanism#saleCompleted(java.security.Principal, com.aoapps.payments.Transaction)}.
+   * The batch completions only contribute their communication errors, since they may be completed
+   * long after their gateway calls.
+   * {@link #getCreditCardProcessor(com.aoindustries.aoserv.client.AoservConnector)} then lowers the
+   * effective weight of slow or erroring providers, and stops selecting a provider that keeps failing
+   * until a trial transaction succeeds.  Disabling discards all tracked health.
+   */
+  public static void setHealthAwareRouting(boolean healthAwareRouting) {
+    ProcessorHealth.setEnabled(healthAwareRouting);
+  }
+
+  /**
+   * Is health-aware routing enabled.
+   *
+   * @see  #setHealthAwareRouting(boolean)
+   */
+  public static boolean isHealthAwareRouting() {
+    return ProcessorHealth.isEnabled();
+  }
+
+  /**
+   * Evicts all cached processors.  They will be created again on next use.
+   */
+  public static void invalidateAll() {
+    for (Map.Entry<ProcessorKey, CacheEntry> entry : processors.entrySet()) {
+      release(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Removes a processor from the cache, closing its provider when it is {@link AutoCloseable}.
+   * Does nothing when the entry has already been removed or replaced.<br>
+   * <br>
+   * The provider is closed immediately, even when another thread is still using the processor
+   * for a transaction.
+   */
+  private static void release(ProcessorKey processorKey, CacheEntry cacheEntry) {
+    if (processors.remove(processorKey, cacheEntry)) {
+      FutureTask<Instance> future = cacheEntry.future;
+      if (future.isDone()) {
+        try {
+          MerchantServicesProvider provider = future.get().provider;
+          if (provider instanceof AutoCloseable) {
+            ((AutoCloseable) provider).close();
+          }
+        } catch (ExecutionException e) {
+          // Was never created
+        } catch (InterruptedException e) {
+          // Restore the interrupted status
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Unable to close provider: " + processorKey.providerId, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks a cached processor as accessed, avoiding contended writes when accessed frequently.
+   */
+  private static void touch(CacheEntry cacheEntry, long now) {
+    if (now - cacheEntry.lastAccessed > ACCESS_GRANULARITY_NANOS) {
+      cacheEntry.lastAccessed = now;
+    }
+  }
+
+  /**
+   * Evicts idle processors then, when over the maximum size, the least recently used processors.
+   */
+  private static void evict(long now) {
+    lastSweep.set(now);
+    long idleTimeout = cacheIdleTimeoutNanos;
+    for (Map.Entry<ProcessorKey, CacheEntry> entry : processors.entrySet()) {
+      CacheEntry cacheEntry = entry.getValue();
+      if (cacheEntry.future.isDone() && now - cacheEntry.lastAccessed > idleTimeout) {
+        release(entry.getKey(), cacheEntry);
+      }
+    }
+    int overflow = processors.size() - maximumCacheSize;
+    if (overflow > 0) {
+      List<Map.Entry<ProcessorKey, CacheEntry>> entries = new ArrayList<>(processors.entrySet());
+      entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessed));
+      for (int i = 0; i < overflow && i < entries.size(); i++) {
+        Map.Entry<ProcessorKey, CacheEntry> entry = entries.get(i);
+        release(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Evicts the processors whose configuration no longer matches the processor table of the given connector.
+   * Processors not in the table are left to idle eviction, since they may still be in use through other connectors.
+   */
+  private static void evictChanged(AoservConnector conn) {
+    try {
+      Map<String, ProcessorKey> current = new HashMap<>();
+      for (com.aoindustries.aoserv.client.payment.Processor processor : conn.getPayment().getProcessor().getRows()) {
+        current.put(processor.getProviderId(), new ProcessorKey(processor));
+      }
+      for (Map.Entry<ProcessorKey, CacheEntry> entry : processors.entrySet()) {
+        ProcessorKey processorKey = entry.getKey();
+        ProcessorKey currentKey = current.get(processorKey.providerId);
+        if (currentKey != null && !currentKey.equals(processorKey)) {
+          release(processorKey, entry.getValue());
+        }
+      }
+    } catch (IOException | SQLException e) {
+      logger.log(Level.WARNING, "Unable to evict changed processors", e);
+    }
+  }
+
+  /**
+   * The type of the constructor of every provider, taking the provider ID and four parameters.
+   */
+  private static final MethodType PROVIDER_CONSTRUCTOR = MethodType.methodType(
+      void.class,
+      String.class,
+      String.class,
+      String.class,
+      String.class,
+      String.class
+  );
+
+  /**
+   * Creates a provider through a constructor resolved once per provider class.
+   */
+  @FunctionalInterface
+  private interface ProviderConstructor {
+    /**
+     * @throws  InvocationTargetException  wrapping anything but an {@link Error} thrown by the constructor
+     */
+    MerchantServicesProvider newInstance(String providerId, String param1, String param2, String param3, String param4)
+        throws InstantiationException, IllegalAccessException, InvocationTargetException;
+  }
+
+  /**
+   * The constructor of each provider class, resolved once per class name, so a processor whose
+   * configuration changes is created again without looking up its class or constructor.
+   * Classes that fail to resolve are not remembered.
+   */
+  private static final ConcurrentMap<String, ProviderConstructor> providerConstructors = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the constructor of a provider class.  A method handle is used when the class is public
+   * and in a package exported unconditionally.  Otherwise, such as for a package exported only to
+   * this module, reflection is used instead, since it is not limited to unconditional exports.
+   */
+  private static ProviderConstructor getProviderConstructor(String className)
+      throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException {
+    ProviderConstructor constructor = providerConstructors.get(className);
+    if (constructor == null) {
+      Class<? extends MerchantServicesProvider> clazz = Class.forName(className).asSubclass(MerchantServicesProvider.class);
+      if (Modifier.isAbstract(clazz.getModifiers())) {
+        throw new InstantiationException(className);
+      }
+      try {
+        MethodHandle handle = MethodHandles.publicLookup()
+            .findConstructor(clazz, PROVIDER_CONSTRUCTOR)
+            .asType(PROVIDER_CONSTRUCTOR.changeReturnType(MerchantServicesProvider.class));
+        constructor = (providerId, param1, param2, param3, param4) -> {
+          try {
+            return (MerchantServicesProvider) handle.invokeExact(providerId, param1, param2, param3, param4);
+          } catch (Error e) {
+            throw e;
+          } catch (Throwable t) {
+            // The same as reflection
+            throw new InvocationTargetException(t);
+          }
+        };
+      } catch (IllegalAccessException e) {
+        Constructor<? extends MerchantServicesProvider> reflected = clazz.getConstructor(PROVIDER_CONSTRUCTOR.parameterArray());
+        if (!reflected.canAccess(null)) {
+          throw e;
+        }
+        constructor = reflected::newInstance;
+      }
+      // Resolving twice is harmless, the last one wins
+      providerConstructors.put(className, constructor);
+    }
+    return constructor;
+  }
+
+  /**
+   * Creates a new provider through its cached constructor.  This is done directly instead of through
+   * {@link com.aoapps.payments.MerchantServicesProviderFactory}, since it retains every provider
+   * it creates, and evicted providers must be released.
+   *
+   * @throws  InvocationTargetException  wrapping any exception thrown by the constructor, the same as
+   *                                     reflection, while an {@link Error} is thrown unchanged
+   */
+  private static MerchantServicesProvider newMerchantServicesProvider(ProcessorKey processorKey)
+      throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    ProviderConstructor constructor = getProviderConstructor(processorKey.className);
+    try {
+      return constructor.newInstance(
+          processorKey.providerId,
+          processorKey.param1,
+          processorKey.param2,
+          processorKey.param3,
+          processorKey.param4
+      );
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
 
   /**
    * Gets an enabled {@link CreditCardProcessor} from the list of processors for the account
@@ -110,6 +479,16 @@ public final class CreditCardProcessorFactory {
    * a higher weight will be returned more often, proportional to weight.  Uses the random source
    * of the {@link AoservConnector} when selecting the processor.<br>
    * <br>
+   * The enabled processors and their cumulative weights are resolved once per connector and
+   * rebuilt only when the processor table is updated, so selection is <code>O(log n)</code> in the
+   * number of enabled processors and does not traverse the account each time.<br>
+   * <br>
+   * When {@link #setHealthAwareRouting(boolean) health-aware routing} is enabled, weights are
+   * further scaled by the recent health of each provider.<br>
+   * <br>
+   * Each selection, and each cache hit, miss, and construction, is reported to the current
+   * {@link CreditCardMetrics}.  Selections and constructions are also Java Flight Recorder events.<br>
+   * <br>
    * Only one instance of each unique {@link CreditCardProcessor} (unique based on providerId, classname and all parameters) will be created.<br>
    * <br>
    * Every processor will use the {@link AoservPersistenceMechanism} for its persistence.
@@ -118,51 +497,30 @@ public final class CreditCardProcessorFactory {
    */
   public static CreditCardProcessor getCreditCardProcessor(AoservConnector conn)
       throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException, IOException, SQLException {
-    // Select the aoserv-client processor before synchronizing on processors
-    List<com.aoindustries.aoserv.client.payment.Processor> ccps = conn.getCurrentAdministrator().getUsername().getPackage().getAccount().getCreditCardProcessors();
-    // Count the total weight of enabled processors
-    int totalEnabledProcessors = 0;
-    com.aoindustries.aoserv.client.payment.Processor firstProcessor = null;
-    int totalWeight = 0;
-    for (com.aoindustries.aoserv.client.payment.Processor ccp : ccps) {
-      if (ccp.getEnabled() && ccp.getWeight() > 0) {
-        totalEnabledProcessors++;
-        if (firstProcessor == null) {
-          firstProcessor = ccp;
-        }
-        totalWeight += ccp.getWeight();
-      }
-    }
-    // No processors ready
-    if (totalEnabledProcessors == 0) {
-      return null;
-    }
-
+    ProcessorSelectionEvent event = FlightRecorder.beginProcessorSelection();
     // Pick one by weight
-    com.aoindustries.aoserv.client.payment.Processor selectedProcessor;
-    if (totalEnabledProcessors == 1) {
-      // One processor shortcut
-      selectedProcessor = firstProcessor;
+    ProcessorRouting routing = routings.get(conn);
+    boolean healthAware = ProcessorHealth.isEnabled();
+    com.aoindustries.aoserv.client.payment.Processor selectedProcessor = healthAware
+        ? routing.selectHealthAware(AoservConnector.getFastRandom())
+        : routing.select(AoservConnector.getFastRandom());
+    CreditCardProcessor processor;
+    // No processors ready
+    if (selectedProcessor == null) {
+      processor = null;
     } else {
-      // Pick a random one based on this weight
-      selectedProcessor = null;
-      int randomPosition = AoservConnector.getFastRandom().nextInt(totalWeight);
-      int weightSoFar = 0;
-      for (com.aoindustries.aoserv.client.payment.Processor ccp : ccps) {
-        if (ccp.getEnabled() && ccp.getWeight() > 0) {
-          weightSoFar += ccp.getWeight();
-          if (weightSoFar > randomPosition) {
-            selectedProcessor = ccp;
-            break;
-          }
-        }
-      }
-      if (selectedProcessor == null) {
-        throw new AssertionError("With proper implementation of weighted random select above, this should not happen");
+      Metrics.processorSelected(selectedProcessor.getProviderId());
+      processor = getCreditCardProcessor(selectedProcessor);
+    }
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.providerId = selectedProcessor == null ? null : selectedProcessor.getProviderId();
+        event.healthAware = healthAware;
+        event.commit();
       }
     }
-
-    return getCreditCardProcessor(selectedProcessor);
+    return processor;
   }
 
   /**
@@ -172,39 +530,177 @@ public final class CreditCardProcessorFactory {
    * <br>
    * Every processor will use the {@link AoservPersistenceMechanism} for its persistence.
    *
-   * @see  MerchantServicesProviderFactory#getMerchantServicesProvider
+   * @see  com.aoapps.payments.MerchantServicesProviderFactory#getMerchantServicesProvider
    */
   public static CreditCardProcessor getCreditCardProcessor(com.aoindustries.aoserv.client.payment.Processor selectedProcessor)
       throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    return getInstance(selectedProcessor).processor;
+  }
+
+  /**
+   * Gets the provider of the processor for the given AOServ processor, sharing the cached instance
+   * used by {@link #getCreditCardProcessor(com.aoindustries.aoserv.client.payment.Processor)}.
+   */
+  static MerchantServicesProvider getMerchantServicesProvider(com.aoindustries.aoserv.client.payment.Processor selectedProcessor)
+      throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
+    return getInstance(selectedProcessor).provider;
+  }
+
+  /**
+   * Creates and caches the processor of every enabled processor of the given connectors, so the
+   * first transactions after startup do not wait on their construction.  This is intended to be
+   * called before a node accepts traffic.<br>
+   * <br>
+   * The processors of the connectors are read, then constructed, in parallel, with the same
+   * number in flight as {@link AoservPersistenceMechanism#setBatchConcurrency(int) batch operations}.  A provider ID
+   * found through more than one connector is constructed only for the first.  Processors already
+   * cached are not constructed again.  Warming more processors than the
+   * {@link #setMaximumCacheSize(int) maximum cache size} evicts the least recently used.
+   *
+   * @return  how long each provider took to construct, by provider ID in the order found,
+   *          or why it could not be constructed
+   *
+   * @throws  IOException   when the processors of a connector could not be read, in which case none were constructed
+   * @throws  SQLException  when the processors of a connector could not be read, in which case none were constructed
+   */
+  public static Map<String, BatchResult<Duration>> warmUp(Collection<? extends AoservConnector> conns) throws IOException, SQLException {
+    // Read the processors of every connector in parallel, too
+    List<BatchResult<List<com.aoindustries.aoserv.client.payment.Processor>>> rows = Batches.run(new ArrayList<>(conns), conn -> {
+      try {
+        processorTableListeners.register(conn);
+        return conn.getPayment().getProcessor().getRows();
+      } catch (IOException e) {
+        throw new SQLException(e);
+      }
+    });
+    Map<String, com.aoindustries.aoserv.client.payment.Processor> enabled = new LinkedHashMap<>();
+    for (BatchResult<List<com.aoindustries.aoserv.client.payment.Processor>> result : rows) {
+      if (!result.isSuccess()) {
+        SQLException e = result.getException();
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw e;
+      }
+      for (com.aoindustries.aoserv.client.payment.Processor processor : result.getValue()) {
+        if (processor.getEnabled()) {
+          enabled.putIfAbsent(processor.getProviderId(), processor);
+        }
+      }
+    }
+    List<com.aoindustries.aoserv.client.payment.Processor> toWarm = new ArrayList<>(enabled.values());
+    List<BatchResult<Duration>> results = Batches.run(toWarm, processor -> {
+      try {
+        return Duration.ofNanos(getInstance(processor).constructionNanos);
+      } catch (ReflectiveOperationException e) {
+        throw new SQLException(e);
+      }
+    });
+    Map<String, BatchResult<Duration>> byProviderId = new LinkedHashMap<>(toWarm.size() * 4 / 3 + 1);
+    for (int i = 0, size = toWarm.size(); i < size; i++) {
+      BatchResult<Duration> result = results.get(i);
+      String providerId = toWarm.get(i).getProviderId();
+      if (!result.isSuccess()) {
+        logger.log(Level.WARNING, "Unable to warm up provider: " + providerId, result.getException());
+      }
+      byProviderId.put(providerId, result);
+    }
+    return byProviderId;
+  }
+
+  private static Instance getInstance(com.aoindustries.aoserv.client.payment.Processor selectedProcessor)
+      throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
     // The key in the map
-    ProcessorKey processorKey = new ProcessorKey(
-        selectedProcessor.getProviderId(),
-        selectedProcessor.getClassName(),
-        selectedProcessor.getParam1(),
-        selectedProcessor.getParam2(),
-        selectedProcessor.getParam3(),
-        selectedProcessor.getParam4()
-    );
-
-    // Now synchronize access to processors
-    synchronized (processors) {
-      // Look for existing instance
-      CreditCardProcessor processorInstance = processors.get(processorKey);
-      if (processorInstance == null) {
-        MerchantServicesProvider provider = MerchantServicesProviderFactory.getMerchantServicesProvider(
-            selectedProcessor.getProviderId(),
-            selectedProcessor.getClassName(),
-            selectedProcessor.getParam1(),
-            selectedProcessor.getParam2(),
-            selectedProcessor.getParam3(),
-            selectedProcessor.getParam4()
-        );
-
-        // Create and add to cache
-        processorInstance = new CreditCardProcessor(provider, AoservPersistenceMechanism.getInstance());
-        processors.put(processorKey, processorInstance);
-      }
-      return processorInstance;
+    ProcessorKey processorKey = new ProcessorKey(selectedProcessor);
+
+    // Look for existing instance
+    long now = System.nanoTime();
+    CacheEntry cacheEntry = processors.get(processorKey);
+    if (cacheEntry == null) {
+      CacheEntry newEntry = new CacheEntry(
+          new FutureTask<>(() -> {
+            ProcessorConstructionEvent event = FlightRecorder.beginProcessorConstruction();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+              MerchantServicesProvider provider = newMerchantServicesProvider(processorKey);
+              Instance instance = new Instance(
+                  provider,
+                  new CreditCardProcessor(provider, AoservPersistenceMechanism.getInstance()),
+                  System.nanoTime() - start
+              );
+              success = true;
+              return instance;
+            } finally {
+              Metrics.processorConstructed(processorKey.providerId, start, success);
+              if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                  event.providerId = processorKey.providerId;
+                  event.className = processorKey.className;
+                  event.success = success;
+                  event.commit();
+                }
+              }
+            }
+          }),
+          now
+      );
+      cacheEntry = processors.putIfAbsent(processorKey, newEntry);
+      if (cacheEntry == null) {
+        Metrics.processorCacheMiss(processorKey.providerId);
+        processorTableListeners.register(selectedProcessor.getTable().getConnector());
+        // Create in this thread, outside any lock
+        cacheEntry = newEntry;
+        newEntry.future.run();
+        if (processors.size() > maximumCacheSize || now - lastSweep.get() > SWEEP_INTERVAL_NANOS) {
+          evict(now);
+        }
+      } else {
+        // Created, or being created, by another thread
+        Metrics.processorCacheHit(processorKey.providerId);
+        touch(cacheEntry, now);
+      }
+    } else {
+      Metrics.processorCacheHit(processorKey.providerId);
+      touch(cacheEntry, now);
+      if (now - lastSweep.get() > SWEEP_INTERVAL_NANOS) {
+        evict(now);
+      }
+    }
+    try {
+      return cacheEntry.future.get();
+    } catch (InterruptedException e) {
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+      throw new WrappedException(e);
+    } catch (ExecutionException e) {
+      // Failures are not cached, the next request will try again
+      processors.remove(processorKey, cacheEntry);
+      Throwable cause = e.getCause();
+      if (cause instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) cause;
+      }
+      if (cause instanceof NoSuchMethodException) {
+        throw (NoSuchMethodException) cause;
+      }
+      if (cause instanceof IllegalAccessException) {
+        throw (IllegalAccessException) cause;
+      }
+      if (cause instanceof InstantiationException) {
+        throw (InstantiationException) cause;
+      }
+      if (cause instanceof InvocationTargetException) {
+        throw (InvocationTargetException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WrappedException(cause);
     }
   }
 }
@@ -0,0 +1,480 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.MerchantServicesProvider;
+import com.aoapps.payments.TokenizedCreditCard;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.payment.Processor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reconciles the stored cards of each enabled processor against the tokens held by its provider, applying
+ * any replacement masked card number or expiration reported by the provider.
+ *
+ * <p>The cards of each processor are partitioned into {@link #getShards() shards} by
+ * {@link CreditCard#getPersistenceUniqueId() persistence unique ID}, and the shards of all processors
+ * are reconciled in parallel on a {@link ForkJoinPool}.  The provider is asked once per processor,
+ * only for the cards of the shards that remain.</p>
+ *
+ * <p>When a checkpoint file is given, each shard is recorded there once all of its cards are
+ * reconciled without failure.  A run that is interrupted, or that has failures, may then be repeated
+ * and will skip the shards already recorded.  The checkpoint file is deleted once a run completes
+ * without any failure.  A checkpoint file written with a different number of shards is ignored.</p>
+ *
+ * <p>Reconciling calls the master and the providers while running in the pool, so the pool should
+ * be sized for blocking I/O rather than for the number of processors.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class CreditCardReconciler {
+
+  private static final Logger logger = Logger.getLogger(CreditCardReconciler.class.getName());
+
+  /**
+   * The default number of shards per processor.
+   */
+  public static final int DEFAULT_SHARDS = 16;
+
+  private static final String CHECKPOINT_HEADER = "shards=";
+
+  /**
+   * The outcome of one run.
+   */
+  public static final class Result {
+
+    private final int checked;
+    private final int expirationsUpdated;
+    private final int cardNumbersUpdated;
+    private final int missingAtProvider;
+    private final int shardsSkipped;
+    private final List<SQLException> failures;
+
+    private Result(RunState state) {
+      this.checked = state.checked.get();
+      this.expirationsUpdated = state.expirationsUpdated.get();
+      this.cardNumbersUpdated = state.cardNumbersUpdated.get();
+      this.missingAtProvider = state.missingAtProvider.get();
+      this.shardsSkipped = state.shardsSkipped.get();
+      this.failures = Collections.unmodifiableList(new ArrayList<>(state.failures));
+    }
+
+    /**
+     * Gets the number of stored cards compared with their provider.
+     */
+    public int getChecked() {
+      return checked;
+    }
+
+    /**
+     * Gets the number of stored cards updated with a replacement expiration.
+     */
+    public int getExpirationsUpdated() {
+      return expirationsUpdated;
+    }
+
+    /**
+     * Gets the number of stored cards updated with a replacement masked card number.
+     */
+    public int getCardNumbersUpdated() {
+      return cardNumbersUpdated;
+    }
+
+    /**
+     * Gets the number of stored cards that were not returned by their provider.
+     */
+    public int getMissingAtProvider() {
+      return missingAtProvider;
+    }
+
+    /**
+     * Gets the number of shards skipped because a previous run had already completed them.
+     */
+    public int getShardsSkipped() {
+      return shardsSkipped;
+    }
+
+    /**
+     * Gets the failures, per card or per processor.  Any shard with a failure is not checkpointed.
+     */
+    public List<SQLException> getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return "checked=" + checked
+          + ", expirationsUpdated=" + expirationsUpdated
+          + ", cardNumbersUpdated=" + cardNumbersUpdated
+          + ", missingAtProvider=" + missingAtProvider
+          + ", shardsSkipped=" + shardsSkipped
+          + ", failures=" + failures.size();
+    }
+  }
+
+  private final ForkJoinPool pool;
+  private final int shards;
+  private final Path checkpoint;
+
+  /**
+   * Creates a reconciler without checkpointing, with {@link #DEFAULT_SHARDS} shards per processor.
+   */
+  public CreditCardReconciler(ForkJoinPool pool) {
+    this(pool, DEFAULT_SHARDS, null);
+  }
+
+  /**
+   * Creates a reconciler.
+   *
+   * @param  checkpoint  the checkpoint file or {@code null} to not checkpoint
+   */
+  public CreditCardReconciler(ForkJoinPool pool, int shards, Path checkpoint) {
+    this.pool = Objects.requireNonNull(pool, "pool");
+    if (shards < 1) {
+      throw new IllegalArgumentException("shards < 1: " + shards);
+    }
+    this.shards = shards;
+    this.checkpoint = checkpoint;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+
+  /**
+   * @return  the checkpoint file or {@code null} when not checkpointing
+   */
+  public Path getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * Reconciles the stored cards of all enabled processors.
+   *
+   * @throws  IOException  when unable to read or write the checkpoint file
+   */
+  public Result reconcile(AoservConnectorPrincipal principal) throws IOException, SQLException {
+    AoservConnector conn = principal.getAoservConnector();
+    List<Processor> processors = conn.getPayment().getProcessor().getRows();
+    try (Checkpoint cp = checkpoint == null ? null : new Checkpoint(checkpoint, shards)) {
+      RunState state = new RunState(principal, cp);
+      List<ProcessorTask> tasks = new ArrayList<>(processors.size());
+      for (Processor processor : processors) {
+        // Disabled processors may no longer be reachable, and their cards are not charged
+        if (processor.getEnabled()) {
+          tasks.add(new ProcessorTask(state, processor));
+        }
+      }
+      pool.invoke(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+      Result result = new Result(state);
+      if (cp != null && result.failures.isEmpty()) {
+        cp.delete();
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The state shared by all tasks of one run.
+   */
+  private static final class RunState {
+
+    private final AoservConnectorPrincipal principal;
+    private final Checkpoint checkpoint;
+    private final AtomicInteger checked = new AtomicInteger();
+    private final AtomicInteger expirationsUpdated = new AtomicInteger();
+    private final AtomicInteger cardNumbersUpdated = new AtomicInteger();
+    private final AtomicInteger missingAtProvider = new AtomicInteger();
+    private final AtomicInteger shardsSkipped = new AtomicInteger();
+    private final ConcurrentLinkedQueue<SQLException> failures = new ConcurrentLinkedQueue<>();
+
+    private RunState(AoservConnectorPrincipal principal, Checkpoint checkpoint) {
+      this.principal = principal;
+      this.checkpoint = checkpoint;
+    }
+
+    private boolean isCompleted(String providerId, int shard) {
+      return checkpoint != null && checkpoint.isCompleted(providerId, shard);
+    }
+  }
+
+  private int getShard(CreditCard creditCard) {
+    // String.hashCode is specified, so shards are stable between runs
+    return Math.floorMod(creditCard.getPersistenceUniqueId().hashCode(), shards);
+  }
+
+  /**
+   * Fetches the tokens of one processor, then reconciles its remaining shards in parallel.
+   */
+  private final class ProcessorTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RunState state;
+    private final transient Processor processor;
+
+    private ProcessorTask(RunState state, Processor processor) {
+      this.state = state;
+      this.processor = processor;
+    }
+
+    @Override
+    protected void compute() {
+      String providerId = processor.getProviderId();
+      // Skip the provider entirely once all of its shards are done
+      List<Integer> remaining = new ArrayList<>(shards);
+      for (int shard = 0; shard < shards; shard++) {
+        if (state.isCompleted(providerId, shard)) {
+          state.shardsSkipped.incrementAndGet();
+        } else {
+          remaining.add(shard);
+        }
+      }
+      if (remaining.isEmpty()) {
+        return;
+      }
+      Map<String, TokenizedCreditCard> tokenizedCreditCards;
+      List<List<CreditCard>> byShard = new ArrayList<>(shards);
+      for (int shard = 0; shard < shards; shard++) {
+        byShard.add(new ArrayList<>());
+      }
+      try {
+        Map<String, CreditCard> persistedCards = new LinkedHashMap<>();
+        for (Map.Entry<String, CreditCard> entry : AoservPersistenceMechanism.getInstance().getCreditCards(state.principal, providerId).entrySet()) {
+          CreditCard creditCard = entry.getValue();
+          int shard = getShard(creditCard);
+          if (!state.isCompleted(providerId, shard)) {
+            persistedCards.put(entry.getKey(), creditCard);
+            byShard.get(shard).add(creditCard);
+          }
+        }
+        if (persistedCards.isEmpty()) {
+          tokenizedCreditCards = Collections.emptyMap();
+        } else {
+          MerchantServicesProvider provider = CreditCardProcessorFactory.getMerchantServicesProvider(processor);
+          StringWriter warnings = new StringWriter();
+          try (PrintWriter warningOut = new PrintWriter(warnings)) {
+            tokenizedCreditCards = provider.getTokenizedCreditCards(persistedCards, null, null, warningOut);
+          }
+          if (warnings.getBuffer().length() > 0 && logger.isLoggable(Level.WARNING)) {
+            logger.warning(providerId + ": " + warnings);
+          }
+        }
+      } catch (SQLException e) {
+        state.failures.add(e);
+        return;
+      } catch (Exception e) {
+        state.failures.add(new SQLException("Unable to get tokenized credit cards: " + providerId, e));
+        return;
+      }
+      List<ShardTask> shardTasks = new ArrayList<>(remaining.size());
+      for (int shard : remaining) {
+        shardTasks.add(new ShardTask(state, providerId, shard, byShard.get(shard), tokenizedCreditCards));
+      }
+      invokeAll(shardTasks);
+    }
+  }
+
+  /**
+   * Reconciles the cards of one shard of one processor.
+   */
+  private static final class ShardTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RunState state;
+    private final String providerId;
+    private final int shard;
+    private final transient List<CreditCard> creditCards;
+    private final transient Map<String, TokenizedCreditCard> tokenizedCreditCards;
+
+    private ShardTask(RunState state, String providerId, int shard, List<CreditCard> creditCards, Map<String, TokenizedCreditCard> tokenizedCreditCards) {
+      this.state = state;
+      this.providerId = providerId;
+      this.shard = shard;
+      this.creditCards = creditCards;
+      this.tokenizedCreditCards = tokenizedCreditCards;
+    }
+
+    @Override
+    protected void compute() {
+      AoservPersistenceMechanism persistenceMechanism = AoservPersistenceMechanism.getInstance();
+      boolean failed = false;
+      for (CreditCard creditCard : creditCards) {
+        try {
+          reconcile(persistenceMechanism, creditCard);
+        } catch (SQLException e) {
+          state.failures.add(e);
+          failed = true;
+        }
+      }
+      if (!failed && state.checkpoint != null) {
+        try {
+          state.checkpoint.completed(providerId, shard);
+        } catch (IOException e) {
+          state.failures.add(new SQLException("Unable to write checkpoint: " + providerId + " shard " + shard, e));
+        }
+      }
+    }
+
+    private void reconcile(AoservPersistenceMechanism persistenceMechanism, CreditCard creditCard) throws SQLException {
+      state.checked.incrementAndGet();
+      TokenizedCreditCard tokenized = tokenizedCreditCards.get(creditCard.getProviderUniqueId());
+      if (tokenized == null) {
+        state.missingAtProvider.incrementAndGet();
+        if (logger.isLoggable(Level.FINE)) {
+          logger.fine(providerId + ": Stored card not found at provider: " + creditCard.getPersistenceUniqueId());
+        }
+        return;
+      }
+      if (TokenReplacements.applyMaskedCardNumber(persistenceMechanism, state.principal, creditCard, tokenized)) {
+        state.cardNumbersUpdated.incrementAndGet();
+      }
+      if (TokenReplacements.applyExpiration(persistenceMechanism, state.principal, creditCard, tokenized)) {
+        state.expirationsUpdated.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * The completed shards, loaded from and appended to the checkpoint file.  Each completed shard
+   * is forced to storage before its task finishes.
+   */
+  private static final class Checkpoint implements AutoCloseable {
+
+    private final Path path;
+    private final Set<String> completed = new HashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FileChannel channel;
+
+    private Checkpoint(Path path, int shards) throws IOException {
+      this.path = path;
+      String header = CHECKPOINT_HEADER + shards;
+      boolean resume = false;
+      // Only lines ending in a newline are complete, since a line is written with its newline and
+      // then forced.  A partially written last line, such as from a crash while writing, may be a
+      // prefix of another key, so is dropped.
+      int completeLength = 0;
+      if (Files.exists(path)) {
+        byte[] bytes = Files.readAllBytes(path);
+        for (int i = bytes.length - 1; i >= 0; i--) {
+          if (bytes[i] == '\n') {
+            completeLength = i + 1;
+            break;
+          }
+        }
+        List<String> lines = Arrays.asList(new String(bytes, 0, completeLength, StandardCharsets.UTF_8).split("\n"));
+        if (completeLength > 0 && lines.get(0).equals(header)) {
+          resume = true;
+          completed.addAll(lines.subList(1, lines.size()));
+        } else {
+          logger.warning("Ignoring checkpoint with different or missing shards: " + path);
+        }
+      }
+      if (resume) {
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // Discard any partially written last line
+        channel.truncate(completeLength);
+      } else {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(ByteBuffer.wrap((header + '\n').getBytes(StandardCharsets.UTF_8)));
+      }
+      channel.force(false);
+    }
+
+    private static String getKey(String providerId, int shard) {
+      return providerId + '\t' + shard;
+    }
+
+    /**
+     * The completed set is never modified after loading, so needs no lock.
+     */
+    private boolean isCompleted(String providerId, int shard) {
+      return completed.contains(getKey(providerId, shard));
+    }
+
+    private void completed(String providerId, int shard) throws IOException {
+      ByteBuffer line = ByteBuffer.wrap((getKey(providerId, shard) + '\n').getBytes(StandardCharsets.UTF_8));
+      lock.lock();
+      try {
+        while (line.hasRemaining()) {
+          channel.write(line);
+        }
+        channel.force(false);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void delete() throws IOException {
+      close();
+      Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+      lock.lock();
+      try {
+        if (channel.isOpen()) {
+          channel.close();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
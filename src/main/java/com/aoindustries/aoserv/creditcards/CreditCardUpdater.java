@@ -0,0 +1,248 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.lang.exception.WrappedException;
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.MerchantServicesProvider;
+import com.aoapps.payments.TokenizedCreditCard;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Applies the account updater results of providers to the stored cards expiring soon, so that
+ * replacement cards are known before a billing cycle instead of being discovered through declines.
+ *
+ * <p>The expiring cards are found through an expiration index and streamed, never all converted at
+ * once.  They are grouped by provider into batches of up to {@link #getBatchSize() batch size} cards,
+ * the provider is asked for the replacements of each batch at once, and the replacements are then
+ * written with the bounded concurrency of {@link AoservPersistenceMechanism#setBatchConcurrency(int)}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class CreditCardUpdater {
+
+  private static final Logger logger = Logger.getLogger(CreditCardUpdater.class.getName());
+
+  /**
+   * The default maximum number of cards sent to a provider at once.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * The outcome of one run.
+   */
+  public static final class Result {
+
+    private final int checked;
+    private final int expirationsUpdated;
+    private final int cardNumbersUpdated;
+    private final List<SQLException> failures;
+
+    private Result(int checked, int expirationsUpdated, int cardNumbersUpdated, List<SQLException> failures) {
+      this.checked = checked;
+      this.expirationsUpdated = expirationsUpdated;
+      this.cardNumbersUpdated = cardNumbersUpdated;
+      this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Gets the number of expiring cards sent to their provider.
+     */
+    public int getChecked() {
+      return checked;
+    }
+
+    /**
+     * Gets the number of stored cards updated with a replacement expiration.
+     */
+    public int getExpirationsUpdated() {
+      return expirationsUpdated;
+    }
+
+    /**
+     * Gets the number of stored cards updated with a replacement masked card number.
+     */
+    public int getCardNumbersUpdated() {
+      return cardNumbersUpdated;
+    }
+
+    /**
+     * Gets the failures, per card or per batch.
+     */
+    public List<SQLException> getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return "checked=" + checked
+          + ", expirationsUpdated=" + expirationsUpdated
+          + ", cardNumbersUpdated=" + cardNumbersUpdated
+          + ", failures=" + failures.size();
+    }
+  }
+
+  private final int batchSize;
+
+  /**
+   * Creates an updater with {@link #DEFAULT_BATCH_SIZE}.
+   */
+  public CreditCardUpdater() {
+    this(DEFAULT_BATCH_SIZE);
+  }
+
+  public CreditCardUpdater(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Updates the cards expiring from the current month through the given number of months after it.
+   *
+   * @see  #update(com.aoindustries.aoserv.creditcards.AoservConnectorPrincipal, java.time.YearMonth, java.time.YearMonth)
+   */
+  public Result update(AoservConnectorPrincipal principal, int months) throws SQLException {
+    if (months < 0) {
+      throw new IllegalArgumentException("months < 0: " + months);
+    }
+    YearMonth now = YearMonth.now();
+    return update(principal, now, now.plusMonths(months));
+  }
+
+  /**
+   * Updates the cards expiring within the given window.
+   *
+   * @param  expiresFrom  the first month of the window or {@code null} for no lower bound
+   * @param  expiresTo    the last month of the window
+   */
+  public Result update(AoservConnectorPrincipal principal, YearMonth expiresFrom, YearMonth expiresTo) throws SQLException {
+    if (expiresTo == null) {
+      throw new IllegalArgumentException("expiresTo is null");
+    }
+    AtomicInteger checked = new AtomicInteger();
+    AtomicInteger expirationsUpdated = new AtomicInteger();
+    AtomicInteger cardNumbersUpdated = new AtomicInteger();
+    List<SQLException> failures = new ArrayList<>();
+    Map<String, Map<String, CreditCard>> pending = new HashMap<>();
+    AoservPersistenceMechanism persistenceMechanism = AoservPersistenceMechanism.getInstance();
+    try (Stream<CreditCard> expiring = persistenceMechanism.getCreditCardStream(principal, CreditCardFilter.ALL.withExpiration(expiresFrom, expiresTo))) {
+      Iterator<CreditCard> iter = expiring.iterator();
+      while (iter.hasNext()) {
+        CreditCard creditCard = iter.next();
+        String providerId = creditCard.getProviderId();
+        Map<String, CreditCard> batch = pending.computeIfAbsent(providerId, id -> new LinkedHashMap<>());
+        batch.put(creditCard.getProviderUniqueId(), creditCard);
+        if (batch.size() >= batchSize) {
+          pending.remove(providerId);
+          apply(principal, providerId, batch, checked, expirationsUpdated, cardNumbersUpdated, failures);
+        }
+      }
+    } catch (WrappedException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      throw new SQLException(cause);
+    }
+    for (Map.Entry<String, Map<String, CreditCard>> entry : pending.entrySet()) {
+      apply(principal, entry.getKey(), entry.getValue(), checked, expirationsUpdated, cardNumbersUpdated, failures);
+    }
+    return new Result(checked.get(), expirationsUpdated.get(), cardNumbersUpdated.get(), failures);
+  }
+
+  /**
+   * Asks the provider for the replacements of one batch, then writes them concurrently.
+   */
+  private static void apply(
+      AoservConnectorPrincipal principal,
+      String providerId,
+      Map<String, CreditCard> batch,
+      AtomicInteger checked,
+      AtomicInteger expirationsUpdated,
+      AtomicInteger cardNumbersUpdated,
+      List<SQLException> failures
+  ) {
+    Map<String, TokenizedCreditCard> tokenizedCreditCards;
+    try {
+      com.aoindustries.aoserv.client.payment.Processor processor = ResolutionContext.get(principal.getAoservConnector()).getProcessor(providerId);
+      if (processor == null) {
+        failures.add(new SQLException("Unable to find Processor: " + providerId));
+        return;
+      }
+      MerchantServicesProvider provider = CreditCardProcessorFactory.getMerchantServicesProvider(processor);
+      StringWriter warnings = new StringWriter();
+      try (PrintWriter warningOut = new PrintWriter(warnings)) {
+        tokenizedCreditCards = provider.getTokenizedCreditCards(batch, null, null, warningOut);
+      }
+      if (warnings.getBuffer().length() > 0 && logger.isLoggable(Level.WARNING)) {
+        logger.warning(providerId + ": " + warnings);
+      }
+    } catch (SQLException e) {
+      failures.add(e);
+      return;
+    } catch (Exception e) {
+      failures.add(new SQLException("Unable to get tokenized credit cards: " + providerId, e));
+      return;
+    }
+    checked.addAndGet(batch.size());
+    AoservPersistenceMechanism persistenceMechanism = AoservPersistenceMechanism.getInstance();
+    List<BatchResult<Void>> results = Batches.run(new ArrayList<>(batch.values()), creditCard -> {
+      TokenizedCreditCard tokenized = tokenizedCreditCards.get(creditCard.getProviderUniqueId());
+      if (tokenized != null) {
+        if (TokenReplacements.applyMaskedCardNumber(persistenceMechanism, principal, creditCard, tokenized)) {
+          cardNumbersUpdated.incrementAndGet();
+        }
+        if (TokenReplacements.applyExpiration(persistenceMechanism, principal, creditCard, tokenized)) {
+          expirationsUpdated.incrementAndGet();
+        }
+      }
+      return null;
+    });
+    for (BatchResult<Void> result : results) {
+      if (!result.isSuccess()) {
+        failures.add(result.getException());
+      }
+    }
+  }
+}
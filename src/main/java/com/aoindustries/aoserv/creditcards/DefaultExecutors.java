@@ -0,0 +1,98 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The executor used for blocking AOServ calls when none is configured: one virtual thread
+ * per task when the Java runtime supports them, otherwise a pool of at most
+ * {@value #MAXIMUM_POOL_SIZE} daemon threads, with further tasks queued.
+ * Since this project targets Java 11, virtual threads are found by reflection.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class DefaultExecutors {
+
+  private static final Logger logger = Logger.getLogger(DefaultExecutors.class.getName());
+
+  /**
+   * The maximum number of platform threads when virtual threads are not available.
+   */
+  private static final int MAXIMUM_POOL_SIZE = 64;
+
+  /**
+   * How long an idle platform thread is kept.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+
+  private static final ExecutorService executor = newExecutor();
+
+  private static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      // Java < 19
+    } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+      // Java 19 and 20 without --enable-preview
+      logger.log(Level.FINE, "Virtual threads not available", e);
+    }
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+        MAXIMUM_POOL_SIZE,
+        MAXIMUM_POOL_SIZE,
+        KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, DefaultExecutors.class.getName() + "-" + threadCounter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+    );
+    // Threads are only started as needed and stop when idle
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private DefaultExecutors() {
+    // Make no instances
+  }
+
+  /**
+   * Gets the shared default executor.  It must not be shut down.
+   */
+  static ExecutorService getExecutor() {
+    return executor;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionRequest;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.payment.Payment;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Currency;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the payments recently added through each connector by account, order number, and amount,
+ * so a double-submitted or retried transaction within its
+ * {@linkplain TransactionRequest#getDuplicateWindow() duplicate window} fails with a
+ * {@link DuplicateTransactionException}, holding the ID of the payment already added, instead of
+ * adding another.  The ID is never returned as if newly added, since the flow that added the payment
+ * is the only one that may call the gateway for it and complete it.
+ *
+ * <p>A transaction arriving while its duplicate is still being added waits for it.  When adding
+ * fails, nothing is remembered and each waiting transaction tries on its own.  Transactions
+ * without an order number or duplicate window are never matched.</p>
+ *
+ * <p>The payment already added is only matched while its status is still pending or successful.
+ * Once it has been declined, voided, or failed, the transaction is added again as a new payment,
+ * since it is then a legitimate retry rather than a duplicate.</p>
+ *
+ * <p>The index is held in memory, separately for each process and each {@link AoservConnector}.
+ * Only payments added through the same connector in this process are known: payments added
+ * through another connector, by another process, or before a restart are never matched, and
+ * those duplicates are still left to the AOServ Platform and the processor.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class DuplicateIndex {
+
+  /**
+   * Adds a payment, returning its persistence unique ID.
+   */
+  @FunctionalInterface
+  interface Inserter {
+    String insert() throws IOException, SQLException;
+  }
+
+  /**
+   * Never invalidated, since every insert updates the payment table.
+   */
+  private static final ConnectorCache<DuplicateIndex> indexes = new ConnectorCache<>(
+      conn -> List.of(),
+      conn -> new DuplicateIndex()
+  );
+
+  /**
+   * How often expired entries are removed.
+   */
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  /**
+   * The statuses of a payment that is still pending or successful, which a duplicate is matched to.
+   */
+  private static final Transaction.Status[] MATCHED_STATUSES = {
+      Transaction.Status.PROCESSING,
+      Transaction.Status.AUTHORIZED,
+      Transaction.Status.CAPTURED,
+      Transaction.Status.HOLD
+  };
+
+  private static final class Key {
+    private final Account.Name account;
+    private final String orderNumber;
+    private final Currency currency;
+    private final BigDecimal amount;
+
+    private Key(Account.Name account, String orderNumber, Currency currency, BigDecimal amount) {
+      this.account = account;
+      this.orderNumber = orderNumber;
+      this.currency = currency;
+      // Equal regardless of scale
+      this.amount = amount == null ? null : amount.stripTrailingZeros();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return
+          account.equals(other.account)
+              && orderNumber.equals(other.orderNumber)
+              && Objects.equals(currency, other.currency)
+              && Objects.equals(amount, other.amount);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(account, orderNumber, currency, amount);
+    }
+  }
+
+  private static final class Entry {
+    private final CompletableFuture<String> persistenceUniqueId = new CompletableFuture<>();
+    private final long windowNanos;
+
+    /**
+     * When the payment was added, set once completed.
+     */
+    private volatile long addedNanos;
+
+    private Entry(long windowNanos) {
+      this.windowNanos = windowNanos;
+    }
+
+    private boolean isExpired(long now) {
+      return persistenceUniqueId.isDone() && now - addedNanos >= windowNanos;
+    }
+  }
+
+  /**
+   * Checks that an already added payment is still pending or successful, as seen through the given connector.
+   */
+  private static boolean isMatched(AoservConnector conn, String persistenceUniqueId) throws IOException, SQLException {
+    Payment payment = conn.getPayment().getPayment().get(Integer.parseInt(persistenceUniqueId));
+    if (payment == null) {
+      return false;
+    }
+    String status = payment.getStatus();
+    for (Transaction.Status matchedStatus : MATCHED_STATUSES) {
+      if (status.equals(matchedStatus.name())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds a payment for a transaction, unless the same payment was already added within its duplicate
+   * window and is still pending or successful.
+   *
+   * @return  the persistence unique ID of the added payment
+   *
+   * @throws  DuplicateTransactionException  when the same payment was already added, holding its persistence unique ID
+   */
+  static String insert(AoservConnector conn, Account account, TransactionRequest transactionRequest, Inserter inserter) throws IOException, SQLException {
+    String orderNumber = transactionRequest.getOrderNumber();
+    int duplicateWindow = transactionRequest.getDuplicateWindow();
+    if (orderNumber == null || orderNumber.isEmpty() || duplicateWindow <= 0) {
+      return inserter.insert();
+    }
+    DuplicateIndex index = indexes.get(conn);
+    Key key = new Key(account.getName(), orderNumber, transactionRequest.getCurrency(), transactionRequest.getAmount());
+    long windowNanos = TimeUnit.SECONDS.toNanos(duplicateWindow);
+    while (true) {
+      long now = System.nanoTime();
+      index.sweep(now);
+      Entry newEntry = new Entry(windowNanos);
+      Entry entry = index.entries.putIfAbsent(key, newEntry);
+      if (entry == null) {
+        String persistenceUniqueId;
+        try {
+          persistenceUniqueId = inserter.insert();
+        } catch (Throwable t) {
+          // Failures are not remembered, the next request will try again
+          index.entries.remove(key, newEntry);
+          newEntry.persistenceUniqueId.completeExceptionally(t);
+          throw t;
+        }
+        newEntry.addedNanos = System.nanoTime();
+        newEntry.persistenceUniqueId.complete(persistenceUniqueId);
+        return persistenceUniqueId;
+      }
+      if (entry.isExpired(now)) {
+        index.entries.remove(key, entry);
+      } else {
+        String persistenceUniqueId;
+        try {
+          persistenceUniqueId = entry.persistenceUniqueId.get();
+        } catch (InterruptedException e) {
+          // Restore the interrupted status
+          Thread.currentThread().interrupt();
+          throw new SQLException(e);
+        } catch (ExecutionException e) {
+          // The other request failed, try again
+          continue;
+        }
+        if (isMatched(conn, persistenceUniqueId)) {
+          throw new DuplicateTransactionException(persistenceUniqueId);
+        }
+        // Declined, voided, or failed since added, so add again
+        index.entries.remove(key, entry);
+      }
+    }
+  }
+
+  private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+  private DuplicateIndex() {
+    // Created through indexes
+  }
+
+  /**
+   * Removes expired entries, at most once per {@link #SWEEP_INTERVAL_NANOS}.
+   */
+  private void sweep(long now) {
+    long last = lastSweep.get();
+    if (now - last > SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+      entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+  }
+}
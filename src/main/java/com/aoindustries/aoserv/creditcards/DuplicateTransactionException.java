@@ -0,0 +1,59 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown by {@link AoservPersistenceMechanism#insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)}
+ * when a transaction duplicates a payment already added within its
+ * {@linkplain com.aoapps.payments.TransactionRequest#getDuplicateWindow() duplicate window}.
+ *
+ * <p>No payment is added.  Since this is thrown before the transaction has a payment of its own,
+ * {@link com.aoapps.payments.CreditCardProcessor} stops without calling the gateway and without
+ * completing any payment, leaving the earlier payment to be completed only by the flow that added
+ * it.  Callers should treat the transaction as already submitted and look up the earlier payment by
+ * {@link #getPersistenceUniqueId()} for its outcome.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public class DuplicateTransactionException extends SQLException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String persistenceUniqueId;
+
+  DuplicateTransactionException(String persistenceUniqueId) {
+    super("Duplicate of Payment #" + persistenceUniqueId);
+    this.persistenceUniqueId = persistenceUniqueId;
+  }
+
+  /**
+   * Gets the persistence unique ID of the payment already added, which this transaction duplicates.
+   */
+  public String getPersistenceUniqueId() {
+    return persistenceUniqueId;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoindustries.aoserv.client.AoservConnector;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes the stored cards of each connector by expiration month, so the cards expiring within a
+ * window are found without scanning all cards.  Cards without an expiration are not indexed.
+ *
+ * <p>The index of a connector is built on first use and discarded whenever the credit card table
+ * changes.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ExpirationIndex {
+
+  /**
+   * The cards by expiration, as months since year zero, in table order within each month.
+   */
+  private static final ConnectorCache<NavigableMap<Integer, List<com.aoindustries.aoserv.client.payment.CreditCard>>> indexes = new ConnectorCache<>(
+      conn -> List.of(conn.getPayment().getCreditCard()),
+      ExpirationIndex::build
+  );
+
+  private ExpirationIndex() {
+    // Make no instances
+  }
+
+  private static int getMonths(int year, int month) {
+    return year * 12 + (month - 1);
+  }
+
+  private static NavigableMap<Integer, List<com.aoindustries.aoserv.client.payment.CreditCard>> build(AoservConnector conn) throws IOException, SQLException {
+    NavigableMap<Integer, List<com.aoindustries.aoserv.client.payment.CreditCard>> index = new TreeMap<>();
+    for (com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard : conn.getPayment().getCreditCard().getRows()) {
+      Byte expirationMonth = aoservCreditCard.getExpirationMonth();
+      Short expirationYear = aoservCreditCard.getExpirationYear();
+      if (expirationMonth != null && expirationYear != null) {
+        index.computeIfAbsent(getMonths(expirationYear, expirationMonth), months -> new ArrayList<>()).add(aoservCreditCard);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Gets the stored cards expiring within the given window, in expiration order.
+   *
+   * @param  expiresFrom  the first month of the window or {@code null} for no lower bound
+   * @param  expiresTo    the last month of the window or {@code null} for no upper bound
+   */
+  static List<com.aoindustries.aoserv.client.payment.CreditCard> get(AoservConnector conn, YearMonth expiresFrom, YearMonth expiresTo) throws IOException, SQLException {
+    NavigableMap<Integer, List<com.aoindustries.aoserv.client.payment.CreditCard>> index = indexes.get(conn);
+    if (expiresFrom != null) {
+      index = index.tailMap(getMonths(expiresFrom.getYear(), expiresFrom.getMonthValue()), true);
+    }
+    if (expiresTo != null) {
+      index = index.headMap(getMonths(expiresTo.getYear(), expiresTo.getMonthValue()), true);
+    }
+    Collection<List<com.aoindustries.aoserv.client.payment.CreditCard>> byMonth = index.values();
+    int size = 0;
+    for (List<com.aoindustries.aoserv.client.payment.CreditCard> cards : byMonth) {
+      size += cards.size();
+    }
+    List<com.aoindustries.aoserv.client.payment.CreditCard> aoservCreditCards = new ArrayList<>(size);
+    for (List<com.aoindustries.aoserv.client.payment.CreditCard> cards : byMonth) {
+      aoservCreditCards.addAll(cards);
+    }
+    return aoservCreditCards;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+/**
+ * Whether Java Flight Recorder events may be created.  The {@code jdk.jfr} module is optional, so
+ * {@link PaymentEvent}, {@link ProcessorConstructionEvent}, and {@link ProcessorSelectionEvent}
+ * are only loaded once this has found it readable.  When it is absent, no events are created.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class FlightRecorder {
+
+  /** Make no instances. */
+  private FlightRecorder() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Whether {@code jdk.jfr} is present and readable by this module.
+   */
+  static final boolean AVAILABLE;
+
+  static {
+    boolean available;
+    try {
+      Class<?> eventClass = Class.forName("jdk.jfr.Event", false, FlightRecorder.class.getClassLoader());
+      available = FlightRecorder.class.getModule().canRead(eventClass.getModule());
+    } catch (ClassNotFoundException | LinkageError e) {
+      available = false;
+    }
+    AVAILABLE = available;
+  }
+
+  /**
+   * Creates and begins a {@link PaymentEvent}.
+   *
+   * @return  the event or {@code null} when Java Flight Recorder is not available
+   */
+  static PaymentEvent beginPayment() {
+    if (!AVAILABLE) {
+      return null;
+    }
+    PaymentEvent event = new PaymentEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Creates and begins a {@link ProcessorConstructionEvent}.
+   *
+   * @return  the event or {@code null} when Java Flight Recorder is not available
+   */
+  static ProcessorConstructionEvent beginProcessorConstruction() {
+    if (!AVAILABLE) {
+      return null;
+    }
+    ProcessorConstructionEvent event = new ProcessorConstructionEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Creates and begins a {@link ProcessorSelectionEvent}.
+   *
+   * @return  the event or {@code null} when Java Flight Recorder is not available
+   */
+  static ProcessorSelectionEvent beginProcessorSelection() {
+    if (!AVAILABLE) {
+      return null;
+    }
+    ProcessorSelectionEvent event = new ProcessorSelectionEvent();
+    event.begin();
+    return event;
+  }
+}
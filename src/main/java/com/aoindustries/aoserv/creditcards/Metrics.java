@@ -0,0 +1,114 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the current {@link CreditCardMetrics} and shields callers from any exception it throws,
+ * so that a faulty adapter never fails a payment.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Metrics {
+
+  private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+  static volatile CreditCardMetrics instance = CreditCardMetrics.NONE;
+
+  private Metrics() {
+    // Make no instances
+  }
+
+  private static void failed(RuntimeException e) {
+    logger.log(Level.WARNING, "Metrics failed", e);
+  }
+
+  /**
+   * Records the completion of an operation started at the given {@link System#nanoTime()}.
+   */
+  static void operationCompleted(CreditCardMetrics.Operation operation, long startNanos, boolean success) {
+    CreditCardMetrics metrics = instance;
+    if (metrics != CreditCardMetrics.NONE) {
+      try {
+        metrics.operationCompleted(operation, System.nanoTime() - startNanos, success);
+      } catch (RuntimeException e) {
+        failed(e);
+      }
+    }
+  }
+
+  static void ioExceptionWrapped(CreditCardMetrics.Operation operation, IOException cause) {
+    try {
+      instance.ioExceptionWrapped(operation, cause);
+    } catch (RuntimeException e) {
+      failed(e);
+    }
+  }
+
+  static void processorSelected(String providerId) {
+    try {
+      instance.processorSelected(providerId);
+    } catch (RuntimeException e) {
+      failed(e);
+    }
+  }
+
+  static void processorCacheHit(String providerId) {
+    try {
+      instance.processorCacheHit(providerId);
+    } catch (RuntimeException e) {
+      failed(e);
+    }
+  }
+
+  static void processorCacheMiss(String providerId) {
+    try {
+      instance.processorCacheMiss(providerId);
+    } catch (RuntimeException e) {
+      failed(e);
+    }
+  }
+
+  static void processorConstructed(String providerId, long startNanos, boolean success) {
+    CreditCardMetrics metrics = instance;
+    if (metrics != CreditCardMetrics.NONE) {
+      try {
+        metrics.processorConstructed(providerId, System.nanoTime() - startNanos, success);
+      } catch (RuntimeException e) {
+        failed(e);
+      }
+    }
+  }
+
+  static void journalRecordRejected(String providerId, String reason) {
+    try {
+      instance.journalRecordRejected(providerId, reason);
+    } catch (RuntimeException e) {
+      failed(e);
+    }
+  }
+}
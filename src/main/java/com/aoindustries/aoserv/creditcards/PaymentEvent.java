@@ -0,0 +1,68 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for one step of the payment lifecycle stored by
+ * {@link AoservPersistenceMechanism}, timed from the start of the step through its round trips
+ * to the master.
+ *
+ * @author  AO Industries, Inc.
+ */
+@Name("com.aoindustries.aoserv.creditcards.Payment")
+@Label("Payment")
+@Category({"AOServ", "Credit Cards"})
+@Description("One step of the payment lifecycle stored in the AOServ Platform")
+@StackTrace(false)
+final class PaymentEvent extends Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Provider ID")
+  String providerId;
+
+  @Label("Account")
+  String account;
+
+  @Label("Payment ID")
+  String paymentId;
+
+  @Label("From Status")
+  @Description("The status of the payment before this step, or null when it is being added")
+  String fromStatus;
+
+  @Label("To Status")
+  String toStatus;
+
+  @Label("Success")
+  boolean success;
+}
@@ -0,0 +1,404 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.AuthorizationResult;
+import com.aoapps.payments.CaptureResult;
+import com.aoapps.payments.TokenizedCreditCard;
+import com.aoapps.payments.Transaction;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.payment.Payment;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * The values stored into a {@link Payment} when a sale or authorization completes, taken from the
+ * {@link Transaction} once so they may be either stored immediately or journaled and stored later
+ * by {@link WriteBehindJournal}.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PaymentResult {
+
+  /**
+   * The kinds of completion, with the statuses a payment must have for each.
+   */
+  enum Type {
+    SALE(Transaction.Status.PROCESSING, Transaction.Status.AUTHORIZED),
+    AUTHORIZE(Transaction.Status.PROCESSING);
+
+    private final Transaction.Status[] allowedStatuses;
+
+    Type(Transaction.Status ... allowedStatuses) {
+      this.allowedStatuses = allowedStatuses;
+    }
+
+    /**
+     * Gets the allowed statuses, which must not be modified.
+     */
+    Transaction.Status[] getAllowedStatuses() {
+      return allowedStatuses;
+    }
+
+    boolean isAllowed(String status) {
+      for (Transaction.Status allowedStatus : allowedStatuses) {
+        if (allowedStatus.name().equals(status)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static String name(Enum<?> value) {
+    return value == null ? null : value.name();
+  }
+
+  /**
+   * Gets the results of a completion of the given type.
+   *
+   * @param  username  the administrator the results are stored as, or {@code null} when stored immediately
+   *                   through the connector of the completion
+   *
+   * @throws  NumberFormatException  when the persistence unique ID of the transaction is not a payment ID
+   */
+  static PaymentResult of(Type type, Transaction transaction, User.Name username) {
+    return type == Type.SALE ? sale(transaction, username) : authorize(transaction, username);
+  }
+
+  /**
+   * Gets the results of a sale.
+   *
+   * @param  username  the administrator the results are stored as, or {@code null} when stored immediately
+   *                   through the connector of the completion
+   *
+   * @throws  NumberFormatException  when the persistence unique ID of the transaction is not a payment ID
+   */
+  static PaymentResult sale(Transaction transaction, User.Name username) {
+    CaptureResult captureResult = transaction.getCaptureResult();
+    long captureTime = transaction.getCaptureTime();
+    return new PaymentResult(
+        Type.SALE,
+        transaction,
+        username,
+        captureTime == -1 ? null : captureTime,
+        transaction.getCapturePrincipalName(),
+        name(captureResult.getCommunicationResult()),
+        captureResult.getProviderErrorCode(),
+        name(captureResult.getErrorCode()),
+        captureResult.getProviderErrorMessage(),
+        captureResult.getProviderUniqueId()
+    );
+  }
+
+  /**
+   * Gets the results of an authorization.
+   *
+   * @param  username  the administrator the results are stored as, or {@code null} when stored immediately
+   *                   through the connector of the completion
+   *
+   * @throws  NumberFormatException  when the persistence unique ID of the transaction is not a payment ID
+   */
+  static PaymentResult authorize(Transaction transaction, User.Name username) {
+    return new PaymentResult(Type.AUTHORIZE, transaction, username, null, null, null, null, null, null, null);
+  }
+
+  private final Type type;
+  private final int paymentId;
+  private final String username;
+  private final String providerId;
+  private final String authorizationCommunicationResult;
+  private final String authorizationProviderErrorCode;
+  private final String authorizationErrorCode;
+  private final String authorizationProviderErrorMessage;
+  private final String authorizationProviderUniqueId;
+  private final String providerReplacementMaskedCardNumber;
+  private final String replacementMaskedCardNumber;
+  private final String providerReplacementExpiration;
+  private final Byte replacementExpirationMonth;
+  private final Short replacementExpirationYear;
+  private final String providerApprovalResult;
+  private final String approvalResult;
+  private final String providerDeclineReason;
+  private final String declineReason;
+  private final String providerReviewReason;
+  private final String reviewReason;
+  private final String providerCvvResult;
+  private final String cvvResult;
+  private final String providerAvsResult;
+  private final String avsResult;
+  private final String approvalCode;
+  private final Long captureTime;
+  private final String capturePrincipalName;
+  private final String captureCommunicationResult;
+  private final String captureProviderErrorCode;
+  private final String captureErrorCode;
+  private final String captureProviderErrorMessage;
+  private final String captureProviderUniqueId;
+  private final String status;
+
+  private PaymentResult(
+      Type type,
+      Transaction transaction,
+      User.Name username,
+      Long captureTime,
+      String capturePrincipalName,
+      String captureCommunicationResult,
+      String captureProviderErrorCode,
+      String captureErrorCode,
+      String captureProviderErrorMessage,
+      String captureProviderUniqueId
+  ) {
+    AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
+    TokenizedCreditCard tokenizedCreditCard = authorizationResult.getTokenizedCreditCard();
+    this.type = type;
+    this.paymentId = Integer.parseInt(transaction.getPersistenceUniqueId());
+    this.username = username == null ? null : username.toString();
+    this.providerId = transaction.getProviderId();
+    this.authorizationCommunicationResult = name(authorizationResult.getCommunicationResult());
+    this.authorizationProviderErrorCode = authorizationResult.getProviderErrorCode();
+    this.authorizationErrorCode = name(authorizationResult.getErrorCode());
+    this.authorizationProviderErrorMessage = authorizationResult.getProviderErrorMessage();
+    this.authorizationProviderUniqueId = authorizationResult.getProviderUniqueId();
+    this.providerReplacementMaskedCardNumber = tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementMaskedCardNumber();
+    this.replacementMaskedCardNumber = tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementMaskedCardNumber();
+    this.providerReplacementExpiration = tokenizedCreditCard == null ? null : tokenizedCreditCard.getProviderReplacementExpiration();
+    this.replacementExpirationMonth = tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationMonth();
+    this.replacementExpirationYear = tokenizedCreditCard == null ? null : tokenizedCreditCard.getReplacementExpirationYear();
+    this.providerApprovalResult = authorizationResult.getProviderApprovalResult();
+    this.approvalResult = name(authorizationResult.getApprovalResult());
+    this.providerDeclineReason = authorizationResult.getProviderDeclineReason();
+    this.declineReason = name(authorizationResult.getDeclineReason());
+    this.providerReviewReason = authorizationResult.getProviderReviewReason();
+    this.reviewReason = name(authorizationResult.getReviewReason());
+    this.providerCvvResult = authorizationResult.getProviderCvvResult();
+    this.cvvResult = name(authorizationResult.getCvvResult());
+    this.providerAvsResult = authorizationResult.getProviderAvsResult();
+    this.avsResult = name(authorizationResult.getAvsResult());
+    this.approvalCode = authorizationResult.getApprovalCode();
+    this.captureTime = captureTime;
+    this.capturePrincipalName = capturePrincipalName;
+    this.captureCommunicationResult = captureCommunicationResult;
+    this.captureProviderErrorCode = captureProviderErrorCode;
+    this.captureErrorCode = captureErrorCode;
+    this.captureProviderErrorMessage = captureProviderErrorMessage;
+    this.captureProviderUniqueId = captureProviderUniqueId;
+    this.status = transaction.getStatus().name();
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  /**
+   * Reads results written by {@link #write(java.io.DataOutput)}.
+   */
+  PaymentResult(DataInput in) throws IOException {
+    int ordinal = in.readUnsignedByte();
+    Type[] types = Type.values();
+    if (ordinal >= types.length) {
+      throw new IOException("Unknown type: " + ordinal);
+    }
+    this.type = types[ordinal];
+    this.paymentId = in.readInt();
+    this.username = readString(in);
+    this.providerId = readString(in);
+    this.authorizationCommunicationResult = readString(in);
+    this.authorizationProviderErrorCode = readString(in);
+    this.authorizationErrorCode = readString(in);
+    this.authorizationProviderErrorMessage = readString(in);
+    this.authorizationProviderUniqueId = readString(in);
+    this.providerReplacementMaskedCardNumber = readString(in);
+    this.replacementMaskedCardNumber = readString(in);
+    this.providerReplacementExpiration = readString(in);
+    this.replacementExpirationMonth = in.readBoolean() ? in.readByte() : null;
+    this.replacementExpirationYear = in.readBoolean() ? in.readShort() : null;
+    this.providerApprovalResult = readString(in);
+    this.approvalResult = readString(in);
+    this.providerDeclineReason = readString(in);
+    this.declineReason = readString(in);
+    this.providerReviewReason = readString(in);
+    this.reviewReason = readString(in);
+    this.providerCvvResult = readString(in);
+    this.cvvResult = readString(in);
+    this.providerAvsResult = readString(in);
+    this.avsResult = readString(in);
+    this.approvalCode = readString(in);
+    this.captureTime = in.readBoolean() ? in.readLong() : null;
+    this.capturePrincipalName = readString(in);
+    this.captureCommunicationResult = readString(in);
+    this.captureProviderErrorCode = readString(in);
+    this.captureErrorCode = readString(in);
+    this.captureProviderErrorMessage = readString(in);
+    this.captureProviderUniqueId = readString(in);
+    this.status = in.readUTF();
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeByte(type.ordinal());
+    out.writeInt(paymentId);
+    writeString(out, username);
+    writeString(out, providerId);
+    writeString(out, authorizationCommunicationResult);
+    writeString(out, authorizationProviderErrorCode);
+    writeString(out, authorizationErrorCode);
+    writeString(out, authorizationProviderErrorMessage);
+    writeString(out, authorizationProviderUniqueId);
+    writeString(out, providerReplacementMaskedCardNumber);
+    writeString(out, replacementMaskedCardNumber);
+    writeString(out, providerReplacementExpiration);
+    out.writeBoolean(replacementExpirationMonth != null);
+    if (replacementExpirationMonth != null) {
+      out.writeByte(replacementExpirationMonth);
+    }
+    out.writeBoolean(replacementExpirationYear != null);
+    if (replacementExpirationYear != null) {
+      out.writeShort(replacementExpirationYear);
+    }
+    writeString(out, providerApprovalResult);
+    writeString(out, approvalResult);
+    writeString(out, providerDeclineReason);
+    writeString(out, declineReason);
+    writeString(out, providerReviewReason);
+    writeString(out, reviewReason);
+    writeString(out, providerCvvResult);
+    writeString(out, cvvResult);
+    writeString(out, providerAvsResult);
+    writeString(out, avsResult);
+    writeString(out, approvalCode);
+    out.writeBoolean(captureTime != null);
+    if (captureTime != null) {
+      out.writeLong(captureTime);
+    }
+    writeString(out, capturePrincipalName);
+    writeString(out, captureCommunicationResult);
+    writeString(out, captureProviderErrorCode);
+    writeString(out, captureErrorCode);
+    writeString(out, captureProviderErrorMessage);
+    writeString(out, captureProviderUniqueId);
+    out.writeUTF(status);
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  int getPaymentId() {
+    return paymentId;
+  }
+
+  /**
+   * Gets the administrator the results are stored as.
+   *
+   * @return  the username or {@code null} when stored immediately through the connector of the completion
+   */
+  String getUsername() {
+    return username;
+  }
+
+  String getProviderId() {
+    return providerId;
+  }
+
+  /**
+   * Gets the status of the payment once these results are stored.
+   */
+  String getStatus() {
+    return status;
+  }
+
+  /**
+   * Stores these results into the payment.  The status of the payment must already have been checked.
+   */
+  void apply(Payment payment) throws IOException, SQLException {
+    if (type == Type.SALE) {
+      payment.saleCompleted(
+          authorizationCommunicationResult,
+          authorizationProviderErrorCode,
+          authorizationErrorCode,
+          authorizationProviderErrorMessage,
+          authorizationProviderUniqueId,
+          providerReplacementMaskedCardNumber,
+          replacementMaskedCardNumber,
+          providerReplacementExpiration,
+          replacementExpirationMonth,
+          replacementExpirationYear,
+          providerApprovalResult,
+          approvalResult,
+          providerDeclineReason,
+          declineReason,
+          providerReviewReason,
+          reviewReason,
+          providerCvvResult,
+          cvvResult,
+          providerAvsResult,
+          avsResult,
+          approvalCode,
+          captureTime == null ? null : new Timestamp(captureTime),
+          capturePrincipalName,
+          captureCommunicationResult,
+          captureProviderErrorCode,
+          captureErrorCode,
+          captureProviderErrorMessage,
+          captureProviderUniqueId,
+          status
+      );
+    } else {
+      payment.authorizeCompleted(
+          authorizationCommunicationResult,
+          authorizationProviderErrorCode,
+          authorizationErrorCode,
+          authorizationProviderErrorMessage,
+          authorizationProviderUniqueId,
+          providerReplacementMaskedCardNumber,
+          replacementMaskedCardNumber,
+          providerReplacementExpiration,
+          replacementExpirationMonth,
+          replacementExpirationYear,
+          providerApprovalResult,
+          approvalResult,
+          providerDeclineReason,
+          declineReason,
+          providerReviewReason,
+          reviewReason,
+          providerCvvResult,
+          cvvResult,
+          providerAvsResult,
+          avsResult,
+          approvalCode,
+          status
+      );
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the creation of a processor for the cache of
+ * {@link CreditCardProcessorFactory}.
+ *
+ * @author  AO Industries, Inc.
+ */
+@Name("com.aoindustries.aoserv.creditcards.ProcessorConstruction")
+@Label("Processor Construction")
+@Category({"AOServ", "Credit Cards"})
+@Description("Creation of a credit card processor and its provider")
+final class ProcessorConstructionEvent extends Event {
+
+  @Label("Provider ID")
+  String providerId;
+
+  @Label("Class Name")
+  String className;
+
+  @Label("Success")
+  boolean success;
+}
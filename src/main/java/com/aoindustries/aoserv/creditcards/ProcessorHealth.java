@@ -0,0 +1,340 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.AuthorizationResult;
+import com.aoapps.payments.CaptureResult;
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionResult;
+import com.aoapps.payments.VoidResult;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks the recent latency and communication error rate of each provider, along with a
+ * circuit breaker that stops routing to a provider that keeps failing.
+ *
+ * <p>Latency and error rate are exponentially weighted moving averages of the results recorded
+ * by {@link AoservPersistenceMechanism#authorizeCompleted(java.security.Principal, com.aoapps.payments.Transaction)},
+ * {@link AoservPersistenceMechanism#saleCompleted(java.security.Principal, com.aoapps.payments.Transaction)},
+ * and {@link AoservPersistenceMechanism#voidCompleted(java.security.Principal, com.aoapps.payments.Transaction)}.
+ * Declines are successful communication; only {@link TransactionResult.CommunicationResult#LOCAL_ERROR},
+ * {@link TransactionResult.CommunicationResult#IO_ERROR}, and {@link TransactionResult.CommunicationResult#GATEWAY_ERROR}
+ * count as failures.</p>
+ *
+ * <p>The latency of sales and authorizations is timed from when
+ * {@link AoservPersistenceMechanism#insertTransaction(java.security.Principal, com.aoapps.lang.security.acl.Group, com.aoapps.payments.Transaction)}
+ * returns, which is when {@link com.aoapps.payments.CreditCardProcessor} calls the gateway, until
+ * the transaction is completed, so the round trips to the AOServ Platform are not counted against
+ * the provider.  Transactions inserted by another process, or before tracking was enabled, have
+ * their outcome recorded without their latency.</p>
+ *
+ * <p>The circuit breaker opens after {@link #CONSECUTIVE_FAILURES} failures in a row, or once the
+ * error rate reaches {@link #ERROR_RATE_THRESHOLD}.  After {@link #OPEN_NANOS} a single trial
+ * request is allowed through: success closes the breaker, failure opens it again.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ProcessorHealth {
+
+  /**
+   * The weight given to each new sample in the moving averages.
+   */
+  private static final double ALPHA = 0.2;
+
+  /**
+   * The number of failures in a row that opens the circuit breaker.
+   */
+  static final int CONSECUTIVE_FAILURES = 5;
+
+  /**
+   * The error rate that opens the circuit breaker, once there are at least {@link #MINIMUM_SAMPLES}.
+   */
+  static final double ERROR_RATE_THRESHOLD = 0.5;
+
+  /**
+   * The number of samples required before the error rate may open the circuit breaker.
+   */
+  static final int MINIMUM_SAMPLES = 10;
+
+  /**
+   * How long the circuit breaker stays open before allowing a trial request.
+   */
+  static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  /**
+   * The smallest share of its weight a provider with a closed circuit breaker is given, so that
+   * a degraded provider continues to receive enough traffic to show its recovery.
+   */
+  static final double MINIMUM_FACTOR = 0.05;
+
+  /**
+   * How long a gateway call is timed before it is assumed abandoned, such as when the gateway threw
+   * and the transaction was never completed.
+   */
+  private static final long ABANDONED_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  /**
+   * How often abandoned gateway calls are removed.
+   */
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private static volatile boolean enabled;
+
+  private static final ConcurrentMap<String, ProcessorHealth> healths = new ConcurrentHashMap<>();
+
+  /**
+   * Is health tracking, and health-aware routing, enabled.
+   */
+  static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables health tracking.  Disabling discards all recorded health.
+   */
+  static void setEnabled(boolean enabled) {
+    ProcessorHealth.enabled = enabled;
+    if (!enabled) {
+      healths.clear();
+    }
+  }
+
+  /**
+   * Gets the health of a provider, creating it when first seen.
+   */
+  static ProcessorHealth get(String providerId) {
+    ProcessorHealth health = healths.get(providerId);
+    if (health == null) {
+      health = healths.computeIfAbsent(providerId, k -> new ProcessorHealth());
+    }
+    return health;
+  }
+
+  /**
+   * Notes that a transaction has been inserted and its gateway call is starting, when health tracking
+   * is enabled.
+   */
+  static void gatewayStarting(Transaction transaction, String persistenceUniqueId) {
+    if (enabled) {
+      get(transaction.getProviderId()).gatewayStarting(persistenceUniqueId, System.nanoTime());
+    }
+  }
+
+  private static boolean isFailure(TransactionResult.CommunicationResult communicationResult) {
+    return communicationResult != null && communicationResult != TransactionResult.CommunicationResult.SUCCESS;
+  }
+
+  /**
+   * Records the outcome of a completed transaction when health tracking is enabled.
+   * The latency is measured from when its gateway call {@linkplain #gatewayStarting(com.aoapps.payments.Transaction, java.lang.String) started}.
+   *
+   * @param  sampleLatency  whether the transaction is recorded as soon as the gateway returns, so
+   *                        that the time since its gateway call started is the round trip to the
+   *                        gateway.  When {@code false}, such as for batches completed after the
+   *                        fact, only the outcome is recorded, since any queueing delay would
+   *                        otherwise count against the provider.
+   */
+  static void record(Transaction transaction, boolean sampleLatency) {
+    if (enabled) {
+      AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
+      CaptureResult captureResult = transaction.getCaptureResult();
+      boolean failure =
+          (authorizationResult != null && isFailure(authorizationResult.getCommunicationResult()))
+              || (captureResult != null && isFailure(captureResult.getCommunicationResult()));
+      long now = System.nanoTime();
+      ProcessorHealth health = get(transaction.getProviderId());
+      String persistenceUniqueId = transaction.getPersistenceUniqueId();
+      Long started = persistenceUniqueId == null ? null : health.gatewayStarts.remove(persistenceUniqueId);
+      double latencyMillis = !sampleLatency || started == null ? -1 : Math.max(0, now - started) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+      health.record(latencyMillis, failure, now);
+    }
+  }
+
+  /**
+   * Records the outcome of a completed void when health tracking is enabled.  The same as
+   * {@link #record(com.aoapps.payments.Transaction, boolean)}, but from the void result, with the
+   * latency measured from the void time.  The void time is set just before the gateway is called,
+   * with nothing sent to the AOServ Platform in between, but only to the millisecond.
+   */
+  static void recordVoid(Transaction transaction, boolean sampleLatency) {
+    if (enabled) {
+      VoidResult voidResult = transaction.getVoidResult();
+      boolean failure = voidResult != null && isFailure(voidResult.getCommunicationResult());
+      long voidTime = transaction.getVoidTime();
+      double latencyMillis = !sampleLatency || voidTime == -1 ? -1 : Math.max(0, System.currentTimeMillis() - voidTime);
+      get(transaction.getProviderId()).record(latencyMillis, failure, System.nanoTime());
+    }
+  }
+
+  /**
+   * A lock instead of synchronized, so virtual threads are never pinned while waiting for it.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // All fields guarded by lock
+  private State state = State.CLOSED;
+  private long samples;
+  private double latencyMillis;
+  private double errorRate;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean trialInFlight;
+  private long trialStartedAt;
+
+  /**
+   * When the gateway call of each transaction started, by persistence unique ID.
+   */
+  private final ConcurrentMap<String, Long> gatewayStarts = new ConcurrentHashMap<>();
+  private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+  private ProcessorHealth() {
+    // Created through get(String)
+  }
+
+  private void open(long now) {
+    state = State.OPEN;
+    openedAt = now;
+    trialInFlight = false;
+  }
+
+  private void gatewayStarting(String persistenceUniqueId, long now) {
+    long last = lastSweep.get();
+    if (now - last > SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+      gatewayStarts.values().removeIf(started -> now - started >= ABANDONED_NANOS);
+    }
+    gatewayStarts.put(persistenceUniqueId, now);
+  }
+
+  /**
+   * @param  latencyMillis  the latency or negative when not sampled
+   */
+  private void record(double latencyMillis, boolean failure, long now) {
+    lock.lock();
+    try {
+      if (latencyMillis >= 0) {
+        this.latencyMillis = samples == 0 ? latencyMillis : this.latencyMillis + ALPHA * (latencyMillis - this.latencyMillis);
+      }
+      errorRate = samples == 0 ? (failure ? 1 : 0) : errorRate + ALPHA * ((failure ? 1 : 0) - errorRate);
+      samples++;
+      if (failure) {
+        consecutiveFailures++;
+      } else {
+        consecutiveFailures = 0;
+      }
+      switch (state) {
+        case HALF_OPEN:
+          if (failure) {
+            open(now);
+          } else {
+            state = State.CLOSED;
+            trialInFlight = false;
+            // Start over once recovered
+            errorRate = 0;
+          }
+          break;
+        case CLOSED:
+          if (
+              consecutiveFailures >= CONSECUTIVE_FAILURES
+                  || (samples >= MINIMUM_SAMPLES && errorRate >= ERROR_RATE_THRESHOLD)
+          ) {
+            open(now);
+          }
+          break;
+        default:
+          // Results for requests sent before opening do not change the state
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the average latency, in milliseconds, or {@code -1} when unknown or not currently routable.
+   */
+  double getLatencyMillis() {
+    lock.lock();
+    try {
+      return state == State.CLOSED && samples > 0 ? latencyMillis : -1;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the share of its static weight this provider should currently receive, from {@code 0} when
+   * its circuit breaker is open to {@code 1} when healthy.
+   *
+   * @param  fastestLatencyMillis  the lowest average latency among the candidate providers, or {@code -1} when unknown
+   */
+  double getFactor(long now, double fastestLatencyMillis) {
+    lock.lock();
+    try {
+      if (state == State.OPEN) {
+        if (now - openedAt < OPEN_NANOS) {
+          return 0;
+        }
+        state = State.HALF_OPEN;
+      }
+      if (state == State.HALF_OPEN) {
+        // Only one trial request at a time, but do not wait forever for a trial that never completes
+        return trialInFlight && now - trialStartedAt < OPEN_NANOS ? 0 : MINIMUM_FACTOR;
+      }
+      if (samples == 0) {
+        return 1;
+      }
+      double factor = 1 - errorRate;
+      if (fastestLatencyMillis > 0 && latencyMillis > fastestLatencyMillis) {
+        factor *= fastestLatencyMillis / latencyMillis;
+      }
+      return Math.max(MINIMUM_FACTOR, factor);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Notifies that this provider has been selected, so a half-open circuit breaker allows no further trials.
+   */
+  void selected(long now) {
+    lock.lock();
+    try {
+      if (state == State.HALF_OPEN) {
+        trialInFlight = true;
+        trialStartedAt = now;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
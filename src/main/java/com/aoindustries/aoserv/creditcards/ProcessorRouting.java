@@ -0,0 +1,154 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoindustries.aoserv.client.payment.Processor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The enabled processors of one account, with their cumulative weights, for weighted random
+ * selection in <code>O(log n)</code> time.  Immutable once built.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ProcessorRouting {
+
+  private final Processor[] processors;
+
+  /**
+   * The sum of the weights of all processors up to and including each index.
+   * Strictly increasing since only processors with a positive weight are included.
+   */
+  private final int[] cumulativeWeights;
+
+  /**
+   * Builds the routing for the enabled processors, with positive weight, in the given list.
+   */
+  ProcessorRouting(List<Processor> ccps) {
+    List<Processor> enabled = new ArrayList<>(ccps.size());
+    for (Processor ccp : ccps) {
+      if (ccp.getEnabled() && ccp.getWeight() > 0) {
+        enabled.add(ccp);
+      }
+    }
+    int size = enabled.size();
+    processors = enabled.toArray(new Processor[size]);
+    cumulativeWeights = new int[size];
+    int totalWeight = 0;
+    for (int i = 0; i < size; i++) {
+      totalWeight = Math.addExact(totalWeight, processors[i].getWeight());
+      cumulativeWeights[i] = totalWeight;
+    }
+  }
+
+  /**
+   * Picks an enabled processor, with probability proportional to its weight.
+   *
+   * @return  the processor or {@code null} when none are enabled
+   */
+  Processor select(Random random) {
+    int size = processors.length;
+    if (size == 0) {
+      return null;
+    }
+    if (size == 1) {
+      // One processor shortcut
+      return processors[0];
+    }
+    int randomPosition = random.nextInt(cumulativeWeights[size - 1]);
+    // The first processor whose cumulative weight exceeds the random position
+    int index = Arrays.binarySearch(cumulativeWeights, randomPosition + 1);
+    if (index < 0) {
+      index = -(index + 1);
+    }
+    return processors[index];
+  }
+
+  /**
+   * Picks an enabled processor, with probability proportional to its weight scaled by its
+   * recent {@link ProcessorHealth health}.  Processors with an open circuit breaker are skipped,
+   * unless every processor is open, in which case selection falls back to the static weights.<br>
+   * <br>
+   * The processor is found by binary search, as in {@link #select(java.util.Random)}, but the
+   * effective weights change with every transaction recorded, so they are computed on each call.
+   * This is therefore <code>O(n)</code> in the number of enabled processors.
+   *
+   * @return  the processor or {@code null} when none are enabled
+   */
+  Processor selectHealthAware(Random random) {
+    int size = processors.length;
+    if (size == 0) {
+      return null;
+    }
+    if (size == 1) {
+      // No other processor to route to
+      return processors[0];
+    }
+    ProcessorHealth[] healths = new ProcessorHealth[size];
+    double fastestLatencyMillis = -1;
+    for (int i = 0; i < size; i++) {
+      ProcessorHealth health = ProcessorHealth.get(processors[i].getProviderId());
+      healths[i] = health;
+      double latencyMillis = health.getLatencyMillis();
+      if (latencyMillis > 0 && (fastestLatencyMillis == -1 || latencyMillis < fastestLatencyMillis)) {
+        fastestLatencyMillis = latencyMillis;
+      }
+    }
+    long now = System.nanoTime();
+    double[] cumulativeEffectiveWeights = new double[size];
+    double totalWeight = 0;
+    int last = -1;
+    for (int i = 0; i < size; i++) {
+      double effectiveWeight = processors[i].getWeight() * healths[i].getFactor(now, fastestLatencyMillis);
+      if (effectiveWeight > 0) {
+        totalWeight += effectiveWeight;
+        last = i;
+      }
+      cumulativeEffectiveWeights[i] = totalWeight;
+    }
+    if (last == -1) {
+      // All circuit breakers open
+      return select(random);
+    }
+    double randomPosition = random.nextDouble() * totalWeight;
+    // The first processor whose cumulative weight exceeds the random position.  Rounding can leave
+    // the position at the total, so stop at the last positive weight.
+    int low = 0;
+    int high = last;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (cumulativeEffectiveWeights[mid] > randomPosition) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    int index = low;
+    healths[index].selected(now);
+    return processors[index];
+  }
+}
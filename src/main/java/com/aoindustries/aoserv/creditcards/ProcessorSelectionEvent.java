@@ -0,0 +1,53 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for the selection of a processor by weight in
+ * {@link CreditCardProcessorFactory#getCreditCardProcessor(com.aoindustries.aoserv.client.AoservConnector)},
+ * including getting the selected processor from the cache.
+ *
+ * @author  AO Industries, Inc.
+ */
+@Name("com.aoindustries.aoserv.creditcards.ProcessorSelection")
+@Label("Processor Selection")
+@Category({"AOServ", "Credit Cards"})
+@Description("Selection of a credit card processor by weight")
+@StackTrace(false)
+final class ProcessorSelectionEvent extends Event {
+
+  @Label("Provider ID")
+  @Description("The selected provider, or null when no processor is enabled")
+  String providerId;
+
+  @Label("Health-Aware")
+  boolean healthAware;
+}
@@ -0,0 +1,98 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.payment.Processor;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Indexes the stored cards of each connector by provider ID and then provider unique ID, so a single
+ * card can be found by its token without scanning all the cards of its processor.
+ *
+ * <p>The index of each provider is built on first use and discarded, along with all others of the
+ * connector, whenever the credit card or processor tables change.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ProviderUniqueIdIndex {
+
+  private static final ConnectorCache<ConcurrentMap<String, Map<String, com.aoindustries.aoserv.client.payment.CreditCard>>> indexes = new ConnectorCache<>(
+      conn -> List.of(
+          conn.getPayment().getCreditCard(),
+          conn.getPayment().getProcessor()
+      ),
+      conn -> new ConcurrentHashMap<>()
+  );
+
+  private ProviderUniqueIdIndex() {
+    // Make no instances
+  }
+
+  /**
+   * Gets the index of one provider, building it when first needed.
+   *
+   * @return  the cards by provider unique ID, or an empty map when the provider is not found
+   *
+   * @throws  SQLException  when two cards of the provider have the same provider unique ID
+   */
+  private static Map<String, com.aoindustries.aoserv.client.payment.CreditCard> getIndex(AoservConnector conn, String providerId) throws IOException, SQLException {
+    ConcurrentMap<String, Map<String, com.aoindustries.aoserv.client.payment.CreditCard>> byProvider = indexes.get(conn);
+    Map<String, com.aoindustries.aoserv.client.payment.CreditCard> index = byProvider.get(providerId);
+    if (index == null) {
+      Processor processor = ResolutionContext.get(conn).getProcessor(providerId);
+      if (processor == null) {
+        // Not remembered, so a newly added processor is found immediately
+        return Collections.emptyMap();
+      }
+      List<com.aoindustries.aoserv.client.payment.CreditCard> aoservCreditCards = processor.getCreditCards();
+      Map<String, com.aoindustries.aoserv.client.payment.CreditCard> newIndex = new HashMap<>(aoservCreditCards.size() * 4 / 3 + 1);
+      for (com.aoindustries.aoserv.client.payment.CreditCard aoservCreditCard : aoservCreditCards) {
+        String providerUniqueId = aoservCreditCard.getProviderUniqueId();
+        if (newIndex.put(providerUniqueId, aoservCreditCard) != null) {
+          throw new SQLException("Duplicate providerUniqueId: " + providerUniqueId);
+        }
+      }
+      index = Collections.unmodifiableMap(newIndex);
+      byProvider.put(providerId, index);
+    }
+    return index;
+  }
+
+  /**
+   * Finds a stored card by its provider and provider unique ID.
+   *
+   * @return  the card or {@code null} when not found
+   */
+  static com.aoindustries.aoserv.client.payment.CreditCard get(AoservConnector conn, String providerId, String providerUniqueId) throws IOException, SQLException {
+    return getIndex(conn, providerId).get(providerUniqueId);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.payment.CountryCode;
+import com.aoindustries.aoserv.client.payment.Processor;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the reference objects resolved through one connector, so that each account, processor,
+ * country code, and stored card used by a checkout is resolved once instead of once per step.
+ * A new, empty context replaces the old one whenever any of these tables change.
+ *
+ * <p>Payments are never remembered, since their status is checked on every step.  Lookups that
+ * find nothing are not remembered either.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ResolutionContext {
+
+  private static final ConnectorCache<ResolutionContext> contexts = new ConnectorCache<>(
+      conn -> List.of(
+          conn.getAccount().getAccount(),
+          conn.getPayment().getProcessor(),
+          conn.getPayment().getCountryCode(),
+          conn.getPayment().getCreditCard()
+      ),
+      ResolutionContext::new
+  );
+
+  /**
+   * Gets the current context for a connector.
+   */
+  static ResolutionContext get(AoservConnector conn) throws IOException, SQLException {
+    return contexts.get(conn);
+  }
+
+  private final AoservConnector conn;
+  private final ConcurrentMap<Account.Name, Account> accounts = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Processor> processors = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CountryCode> countryCodes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, com.aoindustries.aoserv.client.payment.CreditCard> creditCards = new ConcurrentHashMap<>();
+
+  private ResolutionContext(AoservConnector conn) {
+    this.conn = conn;
+  }
+
+  /**
+   * Gets an account by name.
+   *
+   * @return  the account or {@code null} when not found
+   */
+  Account getAccount(Account.Name name) throws IOException, SQLException {
+    Account account = accounts.get(name);
+    if (account == null) {
+      account = conn.getAccount().getAccount().get(name);
+      if (account != null) {
+        accounts.put(name, account);
+      }
+    }
+    return account;
+  }
+
+  /**
+   * Gets a processor by provider ID.
+   *
+   * @return  the processor or {@code null} when not found
+   */
+  Processor getProcessor(String providerId) throws IOException, SQLException {
+    Processor processor = processors.get(providerId);
+    if (processor == null) {
+      processor = conn.getPayment().getProcessor().get(providerId);
+      if (processor != null) {
+        processors.put(providerId, processor);
+      }
+    }
+    return processor;
+  }
+
+  /**
+   * Gets a country code.
+   *
+   * @return  the country code or {@code null} when not found
+   */
+  CountryCode getCountryCode(String code) throws IOException, SQLException {
+    CountryCode countryCode = countryCodes.get(code);
+    if (countryCode == null) {
+      countryCode = conn.getPayment().getCountryCode().get(code);
+      if (countryCode != null) {
+        countryCodes.put(code, countryCode);
+      }
+    }
+    return countryCode;
+  }
+
+  /**
+   * Gets a stored card.
+   *
+   * @return  the stored card or {@code null} when not found
+   */
+  com.aoindustries.aoserv.client.payment.CreditCard getCreditCard(int id) throws IOException, SQLException {
+    Integer key = id;
+    com.aoindustries.aoserv.client.payment.CreditCard creditCard = creditCards.get(key);
+    if (creditCard == null) {
+      creditCard = conn.getPayment().getCreditCard().get(id);
+      if (creditCard != null) {
+        creditCards.put(key, creditCard);
+      }
+    }
+    return creditCard;
+  }
+}
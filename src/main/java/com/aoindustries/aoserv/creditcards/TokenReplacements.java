@@ -0,0 +1,89 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.payments.CreditCard;
+import com.aoapps.payments.TokenizedCreditCard;
+import java.security.Principal;
+import java.sql.SQLException;
+
+/**
+ * Applies the replacement data reported by a provider for a stored card, writing only what differs
+ * from the stored card.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class TokenReplacements {
+
+  private TokenReplacements() {
+    // Make no instances
+  }
+
+  /**
+   * Applies any replacement masked card number.  The full card number is never known from a token,
+   * so only the masked card number is updated.
+   *
+   * @return  {@code true} when the stored card was updated
+   */
+  static boolean applyMaskedCardNumber(
+      AoservPersistenceMechanism persistenceMechanism,
+      Principal principal,
+      CreditCard creditCard,
+      TokenizedCreditCard tokenized
+  ) throws SQLException {
+    String replacementMaskedCardNumber = tokenized.getReplacementMaskedCardNumber();
+    if (replacementMaskedCardNumber != null && !replacementMaskedCardNumber.equals(creditCard.getMaskedCardNumber())) {
+      persistenceMechanism.updateCreditCard(principal, CreditCardFactory.copy(creditCard, replacementMaskedCardNumber));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Applies any replacement expiration.
+   *
+   * @return  {@code true} when the stored card was updated
+   */
+  static boolean applyExpiration(
+      AoservPersistenceMechanism persistenceMechanism,
+      Principal principal,
+      CreditCard creditCard,
+      TokenizedCreditCard tokenized
+  ) throws SQLException {
+    Byte replacementExpirationMonth = tokenized.getReplacementExpirationMonth();
+    Short replacementExpirationYear = tokenized.getReplacementExpirationYear();
+    if (
+        replacementExpirationMonth != null
+            && replacementExpirationYear != null
+            && (
+              replacementExpirationMonth.byteValue() != creditCard.getExpirationMonth()
+                  || replacementExpirationYear.shortValue() != creditCard.getExpirationYear()
+            )
+    ) {
+      persistenceMechanism.updateExpiration(principal, creditCard, replacementExpirationMonth, replacementExpirationYear);
+      return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,685 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.payment.Payment;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A local, append-only journal of completed sale and authorize results, replayed asynchronously
+ * into their payments.  When {@link AoservPersistenceMechanism#setWriteBehindJournal(com.aoindustries.aoserv.creditcards.WriteBehindJournal) enabled},
+ * the completions only wait for their results to be forced to local storage, so checkout no longer
+ * waits on the master.
+ *
+ * <p>Appends from concurrent threads share each force of the journal, so that many completions are
+ * made durable with one fsync.  Each record is length-prefixed and checksummed, and any incomplete
+ * record at the end of the journal, such as from a crash while appending, is discarded when opened.</p>
+ *
+ * <p>Each record holds the administrator of the connector that completed it, and is replayed in order
+ * through the connector of the journal {@link AoservConnector#switchUsers(com.aoindustries.aoserv.client.account.User.Name) switched}
+ * to that administrator, so the master applies the same authorization as it would have to the
+ * completion itself.  The connector of the journal must be allowed to switch to every administrator
+ * that completes payments in write-behind mode.  The status of each payment is checked as it is
+ * replayed, with the same statuses allowed as by the synchronous completions.  A payment already in
+ * the resulting status is skipped, so a record replayed twice, such as after a crash before its
+ * progress was saved, is stored only once.</p>
+ *
+ * <p>I/O errors talking to the master are retried with backoff for as long as it takes.  Records that
+ * can never be stored, because the payment is missing, has another status, or is rejected by the
+ * master, are moved to a {@code .rejected} file next to the journal, logged, and reported to
+ * {@link CreditCardMetrics#journalRecordRejected(java.lang.String, java.lang.String)}.  So are records
+ * that are unreadable or that fail otherwise, after {@value #MAXIMUM_ATTEMPTS} attempts.  Unreadable
+ * records are moved as-is, so the rejected file may not be readable past them.</p>
+ *
+ * <p>Progress is saved in a {@code .offset} file next to the journal, and the journal is truncated
+ * whenever it has been fully replayed.  Records not yet replayed when closed are replayed when next
+ * opened.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class WriteBehindJournal implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(WriteBehindJournal.class.getName());
+
+  /**
+   * The length and checksum before each record.
+   */
+  private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+
+  private static final int MAXIMUM_RECORD_BYTES = 1 << 20;
+
+  private static final long MINIMUM_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final long MAXIMUM_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /**
+   * The number of times a record that is unreadable, or that fails other than by an I/O error talking
+   * to the master, is attempted before it is rejected.
+   */
+  static final int MAXIMUM_ATTEMPTS = 5;
+
+  /**
+   * Stores one record into its payment.
+   */
+  @FunctionalInterface
+  interface Replayer {
+    /**
+     * @return  {@code null} when stored or already stored, otherwise the reason it can never be stored
+     *
+     * @throws  IOException  when unable to talk to the master, to be retried
+     */
+    String replay(PaymentResult result) throws IOException;
+  }
+
+  /**
+   * Opens a journal, creating it when it does not exist, and starts replaying any records remaining
+   * from a previous run.
+   *
+   * @param  conn  the connector used to replay all records, switched to the administrator of each record
+   */
+  public static WriteBehindJournal open(Path path, AoservConnector conn) throws IOException {
+    return new WriteBehindJournal(path, result -> replay(conn, result), MINIMUM_BACKOFF_NANOS);
+  }
+
+  /**
+   * Opens a journal that replays through the given replayer, retrying with the given initial backoff.
+   */
+  static WriteBehindJournal open(Path path, Replayer replayer, long minimumBackoffNanos) throws IOException {
+    return new WriteBehindJournal(path, replayer, minimumBackoffNanos);
+  }
+
+  private final Path path;
+  private final Replayer replayer;
+  private final long minimumBackoffNanos;
+  private final FileChannel channel;
+  private final FileChannel offsetChannel;
+  private final Path rejectedPath;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Signaled when records are appended or replayed.
+   */
+  private final Condition changed = lock.newCondition();
+
+  /**
+   * Serializes forces, so concurrent appends share them.  When both are held, syncLock is acquired
+   * first.  lock is never held during a force, so appends never wait on one.
+   */
+  private final ReentrantLock syncLock = new ReentrantLock();
+
+  /**
+   * How far the journal has been forced.
+   */
+  private static final class Synced {
+    /**
+     * The number of truncations forced, along with the reset offset.
+     */
+    private final long truncations;
+
+    /**
+     * Everything before this position, since the last of those truncations, has been forced.
+     */
+    private final long position;
+
+    private Synced(long truncations, long position) {
+      this.truncations = truncations;
+      this.position = position;
+    }
+
+    /**
+     * Checks if forced through the given position, appended after the given number of truncations.
+     * Anything before a later truncation was already replayed.
+     */
+    private boolean isSynced(long truncations, long position) {
+      return this.truncations > truncations || (this.truncations == truncations && this.position >= position);
+    }
+  }
+
+  /**
+   * The end of the complete records.  Written while holding lock.
+   */
+  private volatile long writePosition;
+
+  /**
+   * How far the journal has been forced.  Written while holding syncLock.
+   */
+  private volatile Synced synced;
+
+  /**
+   * Everything before this position has been replayed.  Guarded by lock.
+   */
+  private long replayPosition;
+
+  /**
+   * The number of times the journal has been truncated.  Written while holding lock.
+   */
+  private volatile long truncations;
+
+  private volatile boolean closed;
+
+  /**
+   * The position of the record that has failed other than by an I/O error talking to the master,
+   * and the number of times in a row it has failed.  Only used by the replay thread.
+   */
+  private long failedPosition = -1;
+  private int failedAttempts;
+
+  private final Thread replayThread;
+
+  private WriteBehindJournal(Path path, Replayer replayer, long minimumBackoffNanos) throws IOException {
+    this.path = path;
+    this.replayer = replayer;
+    this.minimumBackoffNanos = minimumBackoffNanos;
+    this.rejectedPath = path.resolveSibling(path.getFileName() + ".rejected");
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      offsetChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".offset"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+        if (readFully(offsetChannel, offsetBuffer, 0)) {
+          offset = offsetBuffer.getLong(0);
+          if (offset < 0 || offset > size) {
+            logger.warning("Replaying whole journal, saved offset out of range: " + offset);
+            offset = 0;
+          }
+        }
+        // Find the end of the complete records
+        long end = offset;
+        Record record;
+        while ((record = read(end, size)) != null) {
+          end = record.next;
+        }
+        if (end < size) {
+          logger.warning("Discarding incomplete record at end of journal: " + path + " @ " + end);
+          channel.truncate(end);
+          channel.force(true);
+        }
+        replayPosition = offset;
+        writePosition = end;
+        synced = new Synced(0, end);
+      } catch (IOException | RuntimeException | Error e) {
+        offsetChannel.close();
+        throw e;
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      channel.close();
+      throw e;
+    }
+    replayThread = new Thread(this::replay, "WriteBehindJournal replay: " + path);
+    replayThread.setDaemon(true);
+    replayThread.start();
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int count = channel.read(buffer, position + buffer.position());
+      if (count == -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final class Record {
+    /**
+     * The results or {@code null} when the record is complete but cannot be decoded.
+     */
+    private final PaymentResult result;
+    private final long next;
+
+    private Record(PaymentResult result, long next) {
+      this.result = result;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Reads the complete record at the given position.
+   *
+   * @return  the record or {@code null} when there is no complete, valid record before the limit.
+   *          A record that is complete and valid but cannot be decoded has no results.
+   */
+  private Record read(long position, long limit) throws IOException {
+    if (limit - position < RECORD_HEADER_BYTES) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    if (!readFully(channel, header, position)) {
+      return null;
+    }
+    int length = header.getInt(0);
+    int checksum = header.getInt(Integer.BYTES);
+    if (length < 0 || length > MAXIMUM_RECORD_BYTES || limit - position - RECORD_HEADER_BYTES < length) {
+      return null;
+    }
+    ByteBuffer payload = ByteBuffer.allocate(length);
+    if (!readFully(channel, payload, position + RECORD_HEADER_BYTES)) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload.array(), 0, length);
+    if ((int) crc.getValue() != checksum) {
+      return null;
+    }
+    PaymentResult result;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()))) {
+      result = new PaymentResult(in);
+    } catch (IOException e) {
+      // Reading from memory, so the record is complete but cannot be decoded.  It is still skipped
+      // over, so that the records after it are not discarded.
+      result = null;
+    }
+    return new Record(result, position + RECORD_HEADER_BYTES + length);
+  }
+
+  private static byte[] encode(Collection<? extends PaymentResult> results) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bout)) {
+      for (PaymentResult result : results) {
+        payload.reset();
+        try (DataOutputStream payloadOut = new DataOutputStream(payload)) {
+          result.write(payloadOut);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+      }
+    }
+    return bout.toByteArray();
+  }
+
+  /**
+   * Appends results and waits until they are forced to storage.
+   */
+  void append(Collection<? extends PaymentResult> results) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(encode(results));
+    long appendedTruncations;
+    long end;
+    lock.lock();
+    try {
+      if (closed) {
+        throw new IOException("Journal closed: " + path);
+      }
+      long position = writePosition;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      writePosition = end = position;
+      appendedTruncations = truncations;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    sync(appendedTruncations, end);
+  }
+
+  /**
+   * Forces the journal through the given position, appended after the given number of truncations,
+   * sharing a force already in progress or completed by another append.  The first force after a
+   * truncation also forces the truncation and the reset offset, before any record after it is
+   * acknowledged.
+   */
+  private void sync(long appendedTruncations, long position) throws IOException {
+    if (!synced.isSynced(appendedTruncations, position)) {
+      syncLock.lock();
+      try {
+        Synced current = synced;
+        if (!current.isSynced(appendedTruncations, position)) {
+          long targetTruncations;
+          long target;
+          lock.lock();
+          try {
+            targetTruncations = truncations;
+            target = writePosition;
+          } finally {
+            lock.unlock();
+          }
+          if (targetTruncations != current.truncations) {
+            offsetChannel.force(false);
+            channel.force(true);
+          } else {
+            channel.force(false);
+          }
+          synced = new Synced(targetTruncations, target);
+        }
+      } finally {
+        syncLock.unlock();
+      }
+    }
+  }
+
+  private void saveOffset(long offset, boolean force) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+    buffer.putLong(0, offset);
+    while (buffer.hasRemaining()) {
+      offsetChannel.write(buffer, buffer.position());
+    }
+    if (force) {
+      offsetChannel.force(false);
+    }
+  }
+
+  /**
+   * Truncates the journal once fully replayed.  The offset is saved first, so a crash in between
+   * only replays records again.  Must hold lock.
+   *
+   * <p>Nothing is forced here, so appends are not blocked by a force while lock is held.  Instead,
+   * the truncation and the reset offset are forced by the first {@linkplain #sync(long, long) sync}
+   * after it, before any record appended after it is acknowledged.  Until then, a crash leaves
+   * either the replayed records, which are only replayed again, or nothing to replay.  Since
+   * forced positions are counted per truncation, a force in progress cannot mark records appended
+   * after the truncation as forced.</p>
+   */
+  private void truncate() throws IOException {
+    saveOffset(0, false);
+    channel.truncate(0);
+    writePosition = 0;
+    replayPosition = 0;
+    truncations++;
+  }
+
+  private FileChannel openRejected() throws IOException {
+    return FileChannel.open(rejectedPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private void reject(PaymentResult result, String reason) {
+    logger.severe("Rejected results of payment #" + result.getPaymentId() + ": " + reason);
+    Metrics.journalRecordRejected(result.getProviderId(), reason);
+    try (FileChannel rejected = openRejected()) {
+      ByteBuffer buffer = ByteBuffer.wrap(encode(Collections.singletonList(result)));
+      while (buffer.hasRemaining()) {
+        rejected.write(buffer);
+      }
+      rejected.force(false);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Unable to save rejected results of payment #" + result.getPaymentId(), e);
+    }
+  }
+
+  /**
+   * Moves an unreadable record, as-is, to the rejected file.  When even its length is unreadable,
+   * everything through the limit is moved, since the next record cannot be found.
+   *
+   * @return  the position after the moved bytes
+   */
+  private long quarantine(long position, long limit) throws IOException {
+    long end = limit;
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    if (limit - position >= RECORD_HEADER_BYTES && readFully(channel, header, position)) {
+      int length = header.getInt(0);
+      if (length >= 0 && length <= MAXIMUM_RECORD_BYTES && limit - position - RECORD_HEADER_BYTES >= length) {
+        end = position + RECORD_HEADER_BYTES + length;
+      }
+    }
+    try (FileChannel rejected = openRejected()) {
+      long count = end - position;
+      long transferred = 0;
+      while (transferred < count) {
+        transferred += channel.transferTo(position + transferred, count - transferred, rejected);
+      }
+      rejected.force(false);
+    }
+    String reason = "Unreadable record in journal: " + path + " @ " + position + ", " + (end - position) + " bytes";
+    logger.severe("Rejected " + reason);
+    Metrics.journalRecordRejected(null, reason);
+    return end;
+  }
+
+  /**
+   * Stores one record, as its administrator, checking the status of its payment.
+   *
+   * @throws  IOException  when unable to talk to the master, to be retried
+   */
+  private static String replay(AoservConnector conn, PaymentResult result) throws IOException {
+    String username = result.getUsername();
+    if (username == null) {
+      return "No administrator in record";
+    }
+    try {
+      Payment payment = conn.switchUsers(User.Name.valueOf(username)).getPayment().getPayment().get(result.getPaymentId());
+      if (payment == null) {
+        return "Unable to find Payment as " + username;
+      }
+      String status = payment.getStatus();
+      if (result.getType().isAllowed(status)) {
+        result.apply(payment);
+      } else if (!status.equals(result.getStatus())) {
+        return "Status is " + status + ", not allowed for " + result.getType();
+      }
+      // Otherwise already stored
+      return null;
+    } catch (ValidationException e) {
+      return "Invalid administrator: " + username + ": " + e.getMessage();
+    } catch (SQLException e) {
+      return e.toString();
+    }
+  }
+
+  /**
+   * Counts a failed attempt of the record at the given position.
+   *
+   * @return  {@code true} once the record has been attempted {@link #MAXIMUM_ATTEMPTS} times
+   */
+  private boolean isLastAttempt(long position) {
+    if (position != failedPosition) {
+      failedPosition = position;
+      failedAttempts = 0;
+    }
+    return ++failedAttempts >= MAXIMUM_ATTEMPTS;
+  }
+
+  private void replay() {
+    long backoffNanos = minimumBackoffNanos;
+    while (!closed) {
+      try {
+        long position;
+        long limit;
+        lock.lock();
+        try {
+          position = replayPosition;
+          limit = writePosition;
+          if (position == limit) {
+            if (limit != 0) {
+              truncate();
+              changed.signalAll();
+            }
+            changed.await();
+            continue;
+          }
+        } finally {
+          lock.unlock();
+        }
+        Record record;
+        IOException readError = null;
+        try {
+          record = read(position, limit);
+        } catch (IOException e) {
+          record = null;
+          readError = e;
+        }
+        long next;
+        if (record == null || record.result == null) {
+          if (!isLastAttempt(position)) {
+            throw new IOException("Unreadable record in journal: " + path + " @ " + position, readError);
+          }
+          next = quarantine(position, limit);
+        } else {
+          String reason;
+          try {
+            reason = replayer.replay(record.result);
+          } catch (RuntimeException e) {
+            if (!isLastAttempt(position)) {
+              throw e;
+            }
+            reason = e.toString();
+          }
+          if (reason != null) {
+            reject(record.result, reason);
+          }
+          next = record.next;
+        }
+        // Progress is not forced, since replaying a record again is harmless
+        saveOffset(next, false);
+        lock.lock();
+        try {
+          replayPosition = next;
+          changed.signalAll();
+        } finally {
+          lock.unlock();
+        }
+        failedPosition = -1;
+        backoffNanos = minimumBackoffNanos;
+      } catch (InterruptedException e) {
+        if (!closed) {
+          logger.log(Level.WARNING, "Replay interrupted, continuing", e);
+        }
+      } catch (IOException | RuntimeException e) {
+        if (closed) {
+          break;
+        }
+        logger.log(Level.WARNING, "Unable to replay journal, retrying in " + TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms: " + path, e);
+        lock.lock();
+        try {
+          changed.awaitNanos(backoffNanos);
+        } catch (InterruptedException e2) {
+          // Checks closed
+        } finally {
+          lock.unlock();
+        }
+        backoffNanos = Math.min(backoffNanos * 2, MAXIMUM_BACKOFF_NANOS);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of bytes of records appended but not yet forced to storage.
+   */
+  long getUnsyncedBytes() {
+    lock.lock();
+    try {
+      Synced current = synced;
+      return current.truncations == truncations ? writePosition - current.position : writePosition;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the number of bytes of records not yet replayed.
+   */
+  public long getPendingBytes() {
+    lock.lock();
+    try {
+      return writePosition - replayPosition;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until all records appended so far have been replayed.
+   *
+   * @return  {@code true} when replayed or {@code false} on timeout
+   */
+  public boolean awaitReplayed(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    lock.lock();
+    try {
+      long target = writePosition;
+      // Truncated only once everything has been replayed
+      long startTruncations = truncations;
+      while (replayPosition < target && truncations == startTruncations) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        changed.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops replaying and closes the journal.  Records not yet replayed are replayed when next opened.
+   */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    replayThread.interrupt();
+    try {
+      replayThread.join();
+    } catch (InterruptedException e) {
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+    }
+    try {
+      channel.close();
+    } finally {
+      offsetChannel.close();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * aoserv-credit-cards - Stores credit card processing data in the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-credit-cards.
+ *
+ * aoserv-credit-cards is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-credit-cards is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-credit-cards.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.creditcards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.payments.AuthorizationResult;
+import com.aoapps.payments.Transaction;
+import com.aoapps.payments.TransactionResult;
+import com.aoindustries.aoserv.client.account.User;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link WriteBehindJournal} with an in-memory {@link WriteBehindJournal.Replayer}, so that
+ * no master is required.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class WriteBehindJournalTest {
+
+  private static final String PROVIDER_ID = "test";
+
+  private static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static PaymentResult newResult(int paymentId) throws ValidationException {
+    AuthorizationResult authorizationResult = new AuthorizationResult(
+        PROVIDER_ID,
+        TransactionResult.CommunicationResult.SUCCESS,
+        null,
+        null,
+        null,
+        "auth-" + paymentId,
+        null,
+        null,
+        AuthorizationResult.ApprovalResult.APPROVED,
+        null,
+        null,
+        null,
+        null,
+        null,
+        AuthorizationResult.CvvResult.MATCH,
+        null,
+        AuthorizationResult.AvsResult.ADDRESS_Y_ZIP_5,
+        "123456"
+    );
+    Transaction transaction = new Transaction(
+        PROVIDER_ID,
+        Integer.toString(paymentId),
+        "AOINDUSTRIES",
+        null,
+        null,
+        System.currentTimeMillis(),
+        "test",
+        authorizationResult,
+        -1,
+        null,
+        null,
+        -1,
+        null,
+        null,
+        Transaction.Status.AUTHORIZED
+    );
+    return PaymentResult.authorize(transaction, User.Name.valueOf("test"));
+  }
+
+  /**
+   * Writes one record in the journal format: length, checksum, then payload.
+   */
+  private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    out.writeInt(payload.length);
+    out.writeInt((int) crc.getValue());
+    out.write(payload);
+  }
+
+  private Path getRejectedPath(Path path) {
+    return path.resolveSibling(path.getFileName() + ".rejected");
+  }
+
+  /**
+   * Appends from many threads while the replayer, which stores instantly, truncates the journal
+   * whenever it catches up.  A force that completes after a truncation must never mark more than
+   * was written as forced, which would let later appends skip their force.
+   */
+  @Test
+  public void testConcurrentAppendAndTruncate() throws Exception {
+    final int threads = 8;
+    final int appendsPerThread = 500;
+    Path path = temporaryFolder.getRoot().toPath().resolve("journal");
+    ConcurrentMap<Integer, AtomicInteger> replayed = new ConcurrentHashMap<>();
+    try (WriteBehindJournal journal = WriteBehindJournal.open(
+        path,
+        result -> {
+          replayed.computeIfAbsent(result.getPaymentId(), k -> new AtomicInteger()).incrementAndGet();
+          return null;
+        },
+        BACKOFF_NANOS
+    )) {
+      AtomicBoolean appending = new AtomicBoolean(true);
+      AtomicLong minimumUnsynced = new AtomicLong();
+      Thread checker = new Thread(() -> {
+        while (appending.get()) {
+          minimumUnsynced.accumulateAndGet(journal.getUnsyncedBytes(), Math::min);
+        }
+      });
+      checker.start();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+          final int firstId = t * appendsPerThread + 1;
+          futures.add(executor.submit(() -> {
+            for (int id = firstId; id < firstId + appendsPerThread; id++) {
+              journal.append(Collections.singletonList(newResult(id)));
+            }
+            return null;
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdown();
+        appending.set(false);
+        checker.join();
+      }
+      assertTrue("Not replayed", journal.awaitReplayed(1, TimeUnit.MINUTES));
+      assertTrue("Forced position passed write position: " + minimumUnsynced.get(), minimumUnsynced.get() >= 0);
+      assertEquals("Everything appended must be forced", 0, journal.getUnsyncedBytes());
+      assertEquals(threads * appendsPerThread, replayed.size());
+      for (int id = 1; id <= threads * appendsPerThread; id++) {
+        assertEquals("Payment #" + id + " replayed", 1, replayed.get(id).get());
+      }
+    }
+    assertFalse(Files.exists(getRejectedPath(path)));
+  }
+
+  /**
+   * A record that keeps failing, other than by an I/O error, is rejected after a bounded number of
+   * attempts, reported to the metrics, and replay continues with the next record.
+   */
+  @Test
+  public void testFailingRecordRejectedAfterBoundedAttempts() throws Exception {
+    Path path = temporaryFolder.getRoot().toPath().resolve("journal");
+    AtomicInteger attempts = new AtomicInteger();
+    List<Integer> replayed = new CopyOnWriteArrayList<>();
+    List<String> rejectedProviderIds = new CopyOnWriteArrayList<>();
+    CreditCardMetrics.setInstance(new CreditCardMetrics() {
+      @Override
+      public void journalRecordRejected(String providerId, String reason) {
+        rejectedProviderIds.add(providerId);
+      }
+    });
+    try (WriteBehindJournal journal = WriteBehindJournal.open(
+        path,
+        result -> {
+          if (result.getPaymentId() == 2) {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Always fails");
+          }
+          replayed.add(result.getPaymentId());
+          return null;
+        },
+        BACKOFF_NANOS
+    )) {
+      journal.append(List.of(newResult(1), newResult(2), newResult(3)));
+      assertTrue("Not replayed", journal.awaitReplayed(1, TimeUnit.MINUTES));
+    } finally {
+      CreditCardMetrics.setInstance(null);
+    }
+    assertEquals(WriteBehindJournal.MAXIMUM_ATTEMPTS, attempts.get());
+    assertEquals(List.of(1, 3), replayed);
+    assertEquals(List.of(PROVIDER_ID), rejectedProviderIds);
+    assertTrue(Files.size(getRejectedPath(path)) > 0);
+  }
+
+  /**
+   * A complete record that cannot be decoded is kept when opened, so the records after it are not
+   * discarded, then moved as-is to the rejected file after a bounded number of attempts.
+   */
+  @Test
+  public void testUndecodableRecordQuarantined() throws Exception {
+    Path path = temporaryFolder.getRoot().toPath().resolve("journal");
+    // An unknown type, followed by a valid record
+    byte[] undecodable = {(byte) 0xFF, 1, 2, 3};
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(payload)) {
+      newResult(1).write(out);
+    }
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bout)) {
+      writeRecord(out, undecodable);
+      writeRecord(out, payload.toByteArray());
+    }
+    Files.write(path, bout.toByteArray());
+
+    List<Integer> replayed = new CopyOnWriteArrayList<>();
+    try (WriteBehindJournal journal = WriteBehindJournal.open(
+        path,
+        result -> {
+          replayed.add(result.getPaymentId());
+          return null;
+        },
+        BACKOFF_NANOS
+    )) {
+      assertTrue("Not replayed", journal.awaitReplayed(1, TimeUnit.MINUTES));
+    }
+    assertEquals(List.of(1), replayed);
+    // Header and payload of the undecodable record
+    assertEquals(Integer.BYTES + Integer.BYTES + undecodable.length, Files.size(getRejectedPath(path)));
+  }
+}